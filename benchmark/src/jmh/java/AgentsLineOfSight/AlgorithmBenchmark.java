@@ -0,0 +1,79 @@
+package AgentsLineOfSight;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Closest intersection per scan line for all agents of a level with the selected engine, i. e. the algorithm step of one frame
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class AlgorithmBenchmark {
+
+	@Param({ "50", "2000" })
+	int scanLineCount;
+
+	@Param({ "200", "4000" })
+	int roomIterations;
+
+	@Param({ "0", "150" })
+	int lineCount;
+
+	@Param({ "8", "64" })
+	int agentCount;
+
+	@Param({ "BRUTE_FORCE", "GRID", "BVH", "BATCH", "SWEEP" })
+	Engine engine;
+
+	Algorithm algorithm = new Algorithm();
+
+	Level level;
+
+	List<Mover> agents;
+
+	/**
+	 * Scan rays of the agents, created once
+	 */
+	List<ScanRays> scanRays;
+
+	@Setup
+	public void setup() {
+
+		Settings.get().setScanLineCount(scanLineCount);
+		Settings.get().setRoomIterations(roomIterations);
+		Settings.get().setLineCount(lineCount);
+		Settings.get().setEngine(engine);
+
+		level = new Level(BenchmarkSupport.SEED);
+
+		agents = BenchmarkSupport.createAgents(level, agentCount);
+
+		scanRays = new ArrayList<>();
+		for (Mover agent : agents) {
+			scanRays.add(algorithm.createScanRays(agent));
+		}
+
+	}
+
+	/**
+	 * Closest intersection per scan line with the selected engine
+	 */
+	@Benchmark
+	public void getIntersectionPoints(Blackhole blackhole) {
+
+		for (int i = 0; i < agents.size(); i++) {
+			blackhole.consume(algorithm.getIntersectionPoints(agents.get(i), scanRays.get(i), level));
+		}
+
+	}
+
+}
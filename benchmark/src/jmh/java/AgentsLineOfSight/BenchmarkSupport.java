@@ -0,0 +1,43 @@
+package AgentsLineOfSight;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Reproducible benchmark data
+ */
+public class BenchmarkSupport {
+
+	/**
+	 * Fixed seed for levels and agents, so that every run measures the same scene
+	 */
+	public static final long SEED = 42;
+
+	/**
+	 * Agents at random locations within the level, looking in random directions
+	 */
+	public static List<Mover> createAgents(Level level, int count) {
+
+		Random rnd = new Random(SEED);
+
+		List<Mover> agents = new ArrayList<>();
+
+		for (int i = 0; i < count; i++) {
+
+			Mover agent = new Mover();
+			agent.setLocation(level.minX + rnd.nextDouble() * level.width, level.minY + rnd.nextDouble() * level.height);
+
+			// the view angle follows the velocity
+			double angle = rnd.nextDouble() * Math.PI * 2;
+			agent.setVelocity(Math.cos(angle), Math.sin(angle));
+			agent.move();
+
+			agents.add(agent);
+
+		}
+
+		return agents;
+	}
+
+}
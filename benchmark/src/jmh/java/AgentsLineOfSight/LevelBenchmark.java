@@ -0,0 +1,62 @@
+package AgentsLineOfSight;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Level generation including the segment buffer. The spatial indices are built on their first use, the second
+ * benchmark builds all of them.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class LevelBenchmark {
+
+	@Param({ "200", "4000" })
+	int roomIterations;
+
+	@Param({ "0", "150" })
+	int lineCount;
+
+	Level level;
+
+	@Setup
+	public void setup() {
+
+		Settings.get().setRoomIterations(roomIterations);
+		Settings.get().setLineCount(lineCount);
+
+		level = new Level(BenchmarkSupport.SEED);
+
+	}
+
+	@Benchmark
+	public Level generate() {
+
+		// same rooms and lines in every invocation
+		level.rnd.setSeed(BenchmarkSupport.SEED);
+		level.generate();
+
+		return level;
+	}
+
+	@Benchmark
+	public Level generateWithIndices() {
+
+		level.rnd.setSeed(BenchmarkSupport.SEED);
+		level.generate();
+
+		level.getGrid();
+		level.getBvh();
+		level.getBatchKernel();
+		level.getVisibilitySweep();
+
+		return level;
+	}
+
+}
@@ -0,0 +1,98 @@
+package AgentsLineOfSight;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Scan line creation and the list based intersection of all agents of a level, independent of the engine
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ScanLineBenchmark {
+
+	@Param({ "50", "2000" })
+	int scanLineCount;
+
+	@Param({ "200", "4000" })
+	int roomIterations;
+
+	@Param({ "0", "150" })
+	int lineCount;
+
+	@Param({ "8", "64" })
+	int agentCount;
+
+	Algorithm algorithm = new Algorithm();
+
+	Level level;
+
+	List<Mover> agents;
+
+	/**
+	 * Scan lines of the agents, created once for the intersection benchmark
+	 */
+	List<List<Line>> scanLines;
+
+	@Setup
+	public void setup() {
+
+		Settings.get().setScanLineCount(scanLineCount);
+		Settings.get().setRoomIterations(roomIterations);
+		Settings.get().setLineCount(lineCount);
+
+		level = new Level(BenchmarkSupport.SEED);
+
+		agents = BenchmarkSupport.createAgents(level, agentCount);
+
+		scanLines = new ArrayList<>();
+		for (Mover agent : agents) {
+			scanLines.add(algorithm.createScanLines(agent));
+		}
+
+	}
+
+	@Benchmark
+	public void createScanLines(Blackhole blackhole) {
+
+		for (Mover agent : agents) {
+			blackhole.consume(algorithm.createScanLines(agent));
+		}
+
+	}
+
+	/**
+	 * Scan lines as origin and direction table index
+	 */
+	@Benchmark
+	public void createScanRays(Blackhole blackhole) {
+
+		for (Mover agent : agents) {
+			blackhole.consume(algorithm.createScanRays(agent));
+		}
+
+	}
+
+	/**
+	 * All intersections of every scan line
+	 */
+	@Benchmark
+	public void getIntersections(Blackhole blackhole) {
+
+		for (List<Line> agentScanLines : scanLines) {
+			for (Line scanLine : agentScanLines) {
+				blackhole.consume(algorithm.getIntersections(scanLine, level.getLines()));
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,60 @@
+package AgentsLineOfSight;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Separation of every agent from all other agents, i. e. the steering step of one frame, with and without neighbour grid
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class SteeringBenchmark {
+
+	@Param({ "8", "64", "1000", "10000" })
+	int agentCount;
+
+	List<Mover> agents;
+
+	SpatialHash neighbours = new SpatialHash(Settings.SEPARATION_RADIUS);
+
+	@Setup
+	public void setup() {
+
+		Level level = new Level(BenchmarkSupport.SEED);
+
+		agents = BenchmarkSupport.createAgents(level, agentCount);
+
+	}
+
+	@Benchmark
+	public void separate(Blackhole blackhole) {
+
+		for (Mover agent : agents) {
+			blackhole.consume(agent.separate(agents));
+		}
+
+	}
+
+	/**
+	 * Separation using the neighbour grid, including its rebuild
+	 */
+	@Benchmark
+	public void separateNeighbourGrid(Blackhole blackhole) {
+
+		neighbours.rebuild(agents);
+
+		for (Mover agent : agents) {
+			blackhole.consume(agent.separate(neighbours));
+		}
+
+	}
+
+}
@@ -0,0 +1,229 @@
+package AgentsLineOfSight;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Tracer which emits JDK Flight Recorder events. It requires Java 11+, that's why it isn't in the src directory.
+ * Add this directory to the source path to get the events, e. g. the benchmark module does.
+ *
+ * The event of the current thread is kept between the begin and end call. Events whose type isn't enabled in a running
+ * recording aren't created at all, so without a recording the tracer costs a check per call.
+ */
+public class JfrTracer extends Tracer {
+
+	private static final String CATEGORY = "Agents Line of Sight";
+
+	@Name("AgentsLineOfSight.LevelGeneration")
+	@Label("Level Generation")
+	@Category({ CATEGORY, "Simulation" })
+	static class LevelGenerationEvent extends Event {
+
+		@Label("Lines")
+		int lineCount;
+
+		@Label("Lines Before Merging")
+		int rawLineCount;
+
+		@Label("Rooms")
+		int roomCount;
+
+	}
+
+	@Name("AgentsLineOfSight.Visibility")
+	@Label("Visibility")
+	@Description("Scan lines and intersection points of an agent")
+	@Category({ CATEGORY, "Simulation" })
+	static class VisibilityEvent extends Event {
+
+		@Label("Agent")
+		int agent;
+
+		@Label("Rays")
+		int rayCount;
+
+		@Label("Tested Lines")
+		@Description("Scene lines which have been tested for intersections")
+		long testedLines;
+
+		@Label("Hits")
+		long hits;
+
+	}
+
+	@Name("AgentsLineOfSight.Steering")
+	@Label("Steering")
+	@Category({ CATEGORY, "Simulation" })
+	static class SteeringEvent extends Event {
+
+		@Label("Agents")
+		int agentCount;
+
+	}
+
+	@Name("AgentsLineOfSight.RenderPass")
+	@Label("Render Pass")
+	@Category({ CATEGORY, "Rendering" })
+	static class RenderPassEvent extends Event {
+
+		@Label("Pass")
+		String pass;
+
+	}
+
+	private static final EventType LEVEL_GENERATION = EventType.getEventType(LevelGenerationEvent.class);
+	private static final EventType VISIBILITY = EventType.getEventType(VisibilityEvent.class);
+	private static final EventType STEERING = EventType.getEventType(SteeringEvent.class);
+	private static final EventType RENDER_PASS = EventType.getEventType(RenderPassEvent.class);
+
+	ThreadLocal<LevelGenerationEvent> levelGeneration = new ThreadLocal<>();
+	ThreadLocal<VisibilityEvent> visibility = new ThreadLocal<>();
+	ThreadLocal<SteeringEvent> steering = new ThreadLocal<>();
+	ThreadLocal<RenderPassEvent> renderPass = new ThreadLocal<>();
+
+	/**
+	 * The counters are only needed for the visibility events
+	 */
+	@Override
+	public boolean isEnabled() {
+		return VISIBILITY.isEnabled();
+	}
+
+	@Override
+	public void beginLevelGeneration() {
+
+		if (!LEVEL_GENERATION.isEnabled())
+			return;
+
+		LevelGenerationEvent event = new LevelGenerationEvent();
+		event.begin();
+
+		levelGeneration.set(event);
+
+	}
+
+	@Override
+	public void endLevelGeneration(int lineCount, int rawLineCount, int roomCount) {
+
+		LevelGenerationEvent event = levelGeneration.get();
+
+		if (event == null)
+			return;
+
+		event.end();
+
+		if (event.shouldCommit()) {
+			event.lineCount = lineCount;
+			event.rawLineCount = rawLineCount;
+			event.roomCount = roomCount;
+			event.commit();
+		}
+
+		levelGeneration.remove();
+
+	}
+
+	@Override
+	public void beginVisibility() {
+
+		if (!VISIBILITY.isEnabled())
+			return;
+
+		VisibilityEvent event = new VisibilityEvent();
+		event.begin();
+
+		visibility.set(event);
+
+	}
+
+	@Override
+	public void endVisibility(int agent, int rayCount, long testedLines, long hits) {
+
+		VisibilityEvent event = visibility.get();
+
+		if (event == null)
+			return;
+
+		event.end();
+
+		if (event.shouldCommit()) {
+			event.agent = agent;
+			event.rayCount = rayCount;
+			event.testedLines = testedLines;
+			event.hits = hits;
+			event.commit();
+		}
+
+		visibility.remove();
+
+	}
+
+	@Override
+	public void beginSteering() {
+
+		if (!STEERING.isEnabled())
+			return;
+
+		SteeringEvent event = new SteeringEvent();
+		event.begin();
+
+		steering.set(event);
+
+	}
+
+	@Override
+	public void endSteering(int agentCount) {
+
+		SteeringEvent event = steering.get();
+
+		if (event == null)
+			return;
+
+		event.end();
+
+		if (event.shouldCommit()) {
+			event.agentCount = agentCount;
+			event.commit();
+		}
+
+		steering.remove();
+
+	}
+
+	@Override
+	public void beginRenderPass() {
+
+		if (!RENDER_PASS.isEnabled())
+			return;
+
+		RenderPassEvent event = new RenderPassEvent();
+		event.begin();
+
+		renderPass.set(event);
+
+	}
+
+	@Override
+	public void endRenderPass(String pass) {
+
+		RenderPassEvent event = renderPass.get();
+
+		if (event == null)
+			return;
+
+		event.end();
+
+		if (event.shouldCommit()) {
+			event.pass = pass;
+			event.commit();
+		}
+
+		renderPass.remove();
+
+	}
+
+}
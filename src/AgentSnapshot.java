@@ -0,0 +1,76 @@
+package AgentsLineOfSight;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable state of an agent at the end of a tick, as far as it's needed for rendering. The location of the
+ * previous tick is kept for the interpolation between the ticks. The point and line lists are read-only views of the
+ * mover's lists, they aren't copied: the simulation never modifies a list after it has been set on the mover, it sets
+ * new lists instead.
+ */
+public class AgentSnapshot {
+
+	final double x;
+	final double y;
+	final double previousX;
+	final double previousY;
+
+	final double sweepAngle;
+
+	final List<PVector> intersectionPoints;
+	final List<Line> scanLines;
+
+	public AgentSnapshot(Mover mover, AgentSnapshot previous) {
+
+		this.x = mover.getLocation().x;
+		this.y = mover.getLocation().y;
+		this.previousX = previous == null ? x : previous.x;
+		this.previousY = previous == null ? y : previous.y;
+
+		this.sweepAngle = mover.getSweepAngleRad();
+
+		this.intersectionPoints = Collections.unmodifiableList(mover.getIntersectionPoints());
+		this.scanLines = Collections.unmodifiableList(mover.getScanLines());
+
+	}
+
+	/**
+	 * Horizontal offset from the location to the interpolated location
+	 *
+	 * @param alpha Interpolation factor in [0,1], 0 is the previous tick, 1 the current one
+	 */
+	public double getOffsetX(double alpha) {
+		return (previousX - x) * (1 - alpha);
+	}
+
+	/**
+	 * Vertical offset from the location to the interpolated location
+	 *
+	 * @param alpha Interpolation factor in [0,1], 0 is the previous tick, 1 the current one
+	 */
+	public double getOffsetY(double alpha) {
+		return (previousY - y) * (1 - alpha);
+	}
+
+	public double getX() {
+		return x;
+	}
+
+	public double getY() {
+		return y;
+	}
+
+	public double getSweepAngle() {
+		return sweepAngle;
+	}
+
+	public List<PVector> getIntersectionPoints() {
+		return intersectionPoints;
+	}
+
+	public List<Line> getScanLines() {
+		return scanLines;
+	}
+
+}
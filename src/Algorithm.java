@@ -1,10 +1,99 @@
 package AgentsLineOfSight;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
 
 public class Algorithm {
 
+	/**
+	 * Indices of the counters in the statistics array of getIntersectionPoints. The tested lines are at index 0 because
+	 * the scene indices count them in the same array.
+	 */
+	public static final int STATISTICS_TESTED_LINES = 0;
+	public static final int STATISTICS_HITS = 1;
+
+	/**
+	 * Distance in pixels by which the hit of a bisector may deviate from the line between the hits of the interval,
+	 * within it the interval is considered to be on a single wall
+	 */
+	private static final double REFINEMENT_TOLERANCE = 0.5;
+
+	/**
+	 * Angle in radians between the scan line at a scene line endpoint and the ones which pass it on either side
+	 */
+	private static final double ENDPOINT_EPSILON = 1E-4;
+
+	/**
+	 * Directions of the scan lines, rebuilt when the scan line count or the sweep angle changes.
+	 * The table is immutable, concurrent agents at worst build an equal table.
+	 */
+	volatile DirectionTable directions;
+
+	/**
+	 * Settings of the current tick, null for the latest settings
+	 */
+	SettingsSnapshot settings = null;
+
+	/**
+	 * Number of scene lines which have been kept respectively culled by the per agent culling
+	 */
+	LongAdder keptLines = new LongAdder();
+	LongAdder culledLines = new LongAdder();
+
+	/**
+	 * Number of scan rays which have been cast against the scene lines, e. g. the refined scan lines are more than
+	 * the uniform ones. Agent boxes which are tested again for cached rays aren't counted.
+	 */
+	LongAdder raysCast = new LongAdder();
+
+	/**
+	 * Use the given settings until they are replaced, e. g. the ones of the current tick
+	 *
+	 * @param settings The settings or null for the latest settings
+	 */
+	public void setSettings(SettingsSnapshot settings) {
+		this.settings = settings;
+	}
+
+	private SettingsSnapshot settings() {
+		return settings != null ? settings : Settings.get().getSnapshot();
+	}
+
+	/**
+	 * Create the scan lines of the sprite's view cone as origin and direction table index.
+	 * The sprite's scan line stride reduces the count, all agents share the table of the full count.
+	 *
+	 * @param sprite
+	 * @return
+	 */
+	public ScanRays createScanRays(Mover sprite) {
+
+		PVector location = sprite.getLocation();
+		double sweepAngle = sprite.getSweepAngleRad();
+
+		double angleStart = sprite.getViewAngleRad() - sweepAngle / 2;
+
+		DirectionTable table = getDirections(settings().getScanLineCount(), sweepAngle);
+
+		return new ScanRays(table, location.x, location.y, angleStart, settings().getScanLineLength(), sprite.getScanLineStride());
+
+	}
+
+	private DirectionTable getDirections(int count, double sweepAngle) {
+
+		DirectionTable table = directions;
+
+		if (table == null || !table.matches(count, sweepAngle)) {
+			table = new DirectionTable(count, sweepAngle);
+			directions = table;
+		}
+
+		return table;
+	}
+
 	public List<Line> createScanLines( Mover sprite) {
 
 		PVector location = sprite.getLocation();
@@ -13,7 +102,7 @@ public class Algorithm {
 		
 		double angleStart = angle - sweepAngle / 2;
 		double angleEnd = angle + sweepAngle / 2;
-		double angleStep = (angleEnd-angleStart) / Settings.get().getScanLineCount();
+		double angleStep = (angleEnd-angleStart) / settings().getScanLineCount();
 
 		return createScanLines( location, angleStart, angleEnd, angleStep);
 		
@@ -23,12 +112,26 @@ public class Algorithm {
 
 		double angleStart = 0;
 		double angleEnd = Math.PI * 2;
-		double angleStep = Math.PI / Settings.get().getScanLineCount();
+		double angleStep = Math.PI / settings().getScanLineCount();
 
 		return createScanLines(scanLineOrigin, angleStart, angleEnd, angleStep);
 		
 	}
 
+	/**
+	 * Create scan lines from the origin to the given points, e. g. for painting scan lines which aren't uniform
+	 */
+	public List<Line> createScanLines(PVector scanLineOrigin, List<PVector> points) {
+
+		List<Line> scanLines = new ArrayList<>(points.size());
+
+		for (PVector point : points) {
+			scanLines.add(new Line(scanLineOrigin, point));
+		}
+
+		return scanLines;
+	}
+
 	/**
 	 * Sweep around the given circle with the given distance and create the scan lines
 	 * @param scanLineOrigin The origin of the scanline generation
@@ -40,7 +143,7 @@ public class Algorithm {
 		
 		scanLines = new ArrayList<>();
 		
-		double scanLineLength = Settings.get().getScanLineLength();
+		double scanLineLength = settings().getScanLineLength();
 		
 		for( double angle = angleStart; angle < angleEnd; angle += angleStep) {
 
@@ -57,48 +160,796 @@ public class Algorithm {
 	}
 	
 	/**
-	 * Get all the intersecting points for the given scan lines and the given scene lines.
-     *
+	 * Get the visible area of the mover. The sweep engine calculates it directly, the other engines
+	 * use the intersecting points of the given scan lines.
+	 *
+	 * @param mover
 	 * @param scanLines
-	 * @param sceneLines
+	 * @param level
 	 * @return
 	 */
-	public List<PVector> getIntersectionPoints(List<Line> scanLines, List<Line> sceneLines) {
+	public List<PVector> getIntersectionPoints(Mover mover, List<Line> scanLines, Level level) {
 
-		List<PVector> points = new ArrayList<>();
+		if (settings().getEngine() == Engine.SWEEP) {
+			return level.getVisibilitySweep().getVisibilityPolygon(mover, settings());
+		}
+
+		return getIntersectionPoints(scanLines, level);
+	}
+
+	/**
+	 * Get the visible area of the mover from its scan rays, see getIntersectionPoints(Mover, List, Level)
+	 *
+	 * @param mover
+	 * @param scanRays
+	 * @param level
+	 * @return
+	 */
+	public List<PVector> getIntersectionPoints(Mover mover, ScanRays scanRays, Level level) {
+		return getIntersectionPoints(mover, scanRays, level, null, null);
+	}
+
+	/**
+	 * Get the visible area of the mover from its scan rays. The boxes of the other agents block the view as well.
+	 * The sweep engine only considers the walls.
+	 *
+	 * @param mover
+	 * @param scanRays
+	 * @param level
+	 * @param occluders Boxes of the agents, may be null
+	 * @param statistics If not null, the counters at STATISTICS_TESTED_LINES and STATISTICS_HITS are increased
+	 * @return
+	 */
+	public List<PVector> getIntersectionPoints(Mover mover, ScanRays scanRays, Level level, SpatialHash occluders, long[] statistics) {
+
+		if (settings().getEngine() == Engine.SWEEP) {
+
+			List<PVector> polygon = level.getVisibilitySweep().getVisibilityPolygon(mover, settings());
+
+			// the sweep visits every scene line once and every polygon point is a hit
+			if (statistics != null) {
+				statistics[STATISTICS_TESTED_LINES] += level.getSegments().size();
+				statistics[STATISTICS_HITS] += polygon.size();
+			}
+
+			return polygon;
+		}
+
+		SceneIndex index = getSceneIndex(level, scanRays);
+
+		switch (settings().getScanMode()) {
+
+		case REFINED:
+			return getRefinedIntersectionPoints(scanRays, index, occluders, mover, statistics);
+
+		case ENDPOINTS:
+			return getEndpointIntersectionPoints(scanRays, level.getSegments(), level.getGrid(), index, occluders, mover, statistics);
+
+		case UNIFORM:
+		default:
+			return getIntersectionPoints(scanRays, index, occluders, mover, statistics);
+
+		}
+	}
+
+	/**
+	 * The index of the level for the engine which is selected in the settings, reduced to the lines which the scan rays
+	 * can reach if the lines are culled
+	 */
+	public SceneIndex getSceneIndex(Level level, ScanRays scanRays) {
+
+		SceneIndex index = getSceneIndex(level);
+
+		// the selected engine only finds the lines within the range and the cone of the mover
+		if (settings().isCullLines()) {
+
+			CulledSegments culled = new CulledSegments(level.getSegments(), level.getGrid(), scanRays.getX(), scanRays.getY(), scanRays.getLength(), scanRays.getAngleStart(), scanRays.getSweepAngle());
+
+			keptLines.add(culled.size());
+			culledLines.add(culled.getCulledCount());
+
+			index = index.filter(culled.getLines());
+		}
+
+		return index;
+	}
+
+	/**
+	 * Number of scan rays which have been cast since the last reset
+	 */
+	public long getRaysCast() {
+		return raysCast.sum();
+	}
+
+	public void resetRaysCast() {
+		raysCast.reset();
+	}
+
+	/**
+	 * Share of the scene lines which have been culled since the last reset
+	 *
+	 * @return Culled share in [0,1], 0 if the culling hasn't been used
+	 */
+	public double getCulledShare() {
+
+		long culled = culledLines.sum();
+		long total = culled + keptLines.sum();
+
+		return total == 0 ? 0 : (double) culled / total;
+	}
+
+	public long getKeptLines() {
+		return keptLines.sum();
+	}
+
+	public long getCulledLines() {
+		return culledLines.sum();
+	}
+
+	public void resetCullingStatistics() {
+		keptLines.reset();
+		culledLines.reset();
+	}
+
+	/**
+	 * Get all the intersecting points for the given scan lines and the scene lines of the level,
+	 * using the engine which is selected in the settings.
+	 *
+	 * @param scanLines
+	 * @param level
+	 * @return
+	 */
+	public List<PVector> getIntersectionPoints(List<Line> scanLines, Level level) {
+		return getIntersectionPoints(scanLines, getSceneIndex(level));
+	}
+
+	/**
+	 * The index of the level for the engine which is selected in the settings. The sweep engine isn't an index,
+	 * the segment buffer is used instead.
+	 */
+	public SceneIndex getSceneIndex(Level level) {
+
+		switch (settings().getEngine()) {
+
+		case GRID:
+			return level.getGrid();
+
+		case BVH:
+			return level.getBvh();
+
+		case BATCH:
+			return level.getBatchKernel();
+
+		case BRUTE_FORCE:
+		default:
+			return level.getSegments();
+
+		}
+
+	}
+
+	/**
+	 * Get the closest intersecting point per scan line using the given scene index.
+	 *
+	 * @param scanLines
+	 * @param index
+	 * @return
+	 */
+	public List<PVector> getIntersectionPoints(List<Line> scanLines, SceneIndex index) {
+
+		List<PVector> points = new ArrayList<>(scanLines.size());
+
+		boolean limit = settings().isLimitToScanLineLength();
 
 		for (Line scanLine : scanLines) {
 
-			List<PVector> intersections = getIntersections(scanLine, sceneLines);
+			double x = scanLine.getStart().x;
+			double y = scanLine.getStart().y;
+			double dx = scanLine.getEnd().x - x;
+			double dy = scanLine.getEnd().y - y;
 
-			double x = 0;
-			double y = 0;
-			double dist = Double.MAX_VALUE;
-			
-			// find the intersection that is closest to the scanline
-			if (intersections.size() > 0) {
+			addPoint(points, x, y, dx, dy, index.nearestHit(x, y, dx, dy), limit);
+
+		}
+
+		return points;
+	}
+
+	/**
+	 * Get the closest intersecting point per scan ray using the given scene index.
+	 *
+	 * @param scanRays
+	 * @param index
+	 * @return
+	 */
+	public List<PVector> getIntersectionPoints(ScanRays scanRays, SceneIndex index) {
+		return getIntersectionPoints(scanRays, index, null, null, null);
+	}
+
+	/**
+	 * Get the closest intersecting point per scan ray using the given scene index and the agent boxes.
+	 * The boxes are only searched up to the closest wall.
+	 *
+	 * @param scanRays
+	 * @param index
+	 * @param occluders Boxes of the agents, may be null
+	 * @param ignore The agent which casts the scan rays
+	 * @param statistics If not null, the counters at STATISTICS_TESTED_LINES and STATISTICS_HITS are increased
+	 * @return
+	 */
+	public List<PVector> getIntersectionPoints(ScanRays scanRays, SceneIndex index, SpatialHash occluders, SpriteBase ignore, long[] statistics) {
+
+		raysCast.add(scanRays.size());
+
+		List<PVector> points = new ArrayList<>(scanRays.size());
+
+		boolean limit = settings().isLimitToScanLineLength();
+
+		double x = scanRays.getX();
+		double y = scanRays.getY();
+
+		for (int i = 0; i < scanRays.size(); i++) {
+
+			double dx = scanRays.getDx(i);
+			double dy = scanRays.getDy(i);
+
+			double t = index.nearestHit(x, y, dx, dy, statistics);
+
+			if (occluders != null) {
+				t = Math.min(t, occluders.nearestHit(x, y, dx, dy, ignore, t));
+			}
+
+			if (statistics != null && t != Double.POSITIVE_INFINITY) {
+				statistics[STATISTICS_HITS]++;
+			}
+
+			addPoint(points, x, y, dx, dy, t, limit);
+
+		}
+
+		return points;
+	}
+
+	/**
+	 * Get the closest wall hit per scan ray, without the agent boxes. The walls are static, so the hits stay valid
+	 * as long as the scan rays do, see getOccludedIntersectionPoints.
+	 *
+	 * @param scanRays
+	 * @param index
+	 * @param statistics If not null, the counter at STATISTICS_TESTED_LINES is increased
+	 * @return The parameter t per scan ray or Double.POSITIVE_INFINITY if it doesn't hit a wall
+	 */
+	public double[] getWallHits(ScanRays scanRays, SceneIndex index, long[] statistics) {
+
+		raysCast.add(scanRays.size());
+
+		double[] wallHits = new double[scanRays.size()];
+
+		double x = scanRays.getX();
+		double y = scanRays.getY();
+
+		for (int i = 0; i < scanRays.size(); i++) {
+			wallHits[i] = index.nearestHit(x, y, scanRays.getDx(i), scanRays.getDy(i), statistics);
+		}
+
+		return wallHits;
+	}
+
+	/**
+	 * Get the closest intersecting point per scan ray from the wall hits and the agent boxes. The result is the same
+	 * as the one of getIntersectionPoints with the occluders, but only the boxes are tested.
+	 *
+	 * @param scanRays
+	 * @param wallHits The wall hits of the scan rays, see getWallHits
+	 * @param occluders Boxes of the agents, may be null
+	 * @param ignore The agent which casts the scan rays
+	 * @param statistics If not null, the counter at STATISTICS_HITS is increased
+	 * @return
+	 */
+	public List<PVector> getOccludedIntersectionPoints(ScanRays scanRays, double[] wallHits, SpatialHash occluders, SpriteBase ignore, long[] statistics) {
+
+		List<PVector> points = new ArrayList<>(scanRays.size());
+
+		boolean limit = settings().isLimitToScanLineLength();
+
+		double x = scanRays.getX();
+		double y = scanRays.getY();
+
+		for (int i = 0; i < scanRays.size(); i++) {
+
+			double dx = scanRays.getDx(i);
+			double dy = scanRays.getDy(i);
+
+			double t = wallHits[i];
+
+			if (occluders != null) {
+				t = Math.min(t, occluders.nearestHit(x, y, dx, dy, ignore, t));
+			}
+
+			if (statistics != null && t != Double.POSITIVE_INFINITY) {
+				statistics[STATISTICS_HITS]++;
+			}
+
+			addPoint(points, x, y, dx, dy, t, limit);
+
+		}
+
+		return points;
+	}
+
+	/**
+	 * Get the intersecting points with hierarchical caster. The scan rays are a coarse fan, every interval between
+	 * neighbouring rays is split at its bisector. If the hit of the bisector lies on the line between the hits of the
+	 * interval, the interval is a single wall and isn't split further. Otherwise both halves are refined recursively
+	 * until they are smaller than the minimum angle of the settings, so the additional rays end up at corners and edges.
+	 * Unlike the uniform scan lines, the refined ones reach the end of the view cone.
+	 *
+	 * @param scanRays The coarse fan
+	 * @param index
+	 * @param occluders Boxes of the agents, may be null
+	 * @param ignore The agent which casts the scan rays
+	 * @param statistics If not null, the counters at STATISTICS_TESTED_LINES and STATISTICS_HITS are increased
+	 * @return The points in angular order
+	 */
+	public List<PVector> getRefinedIntersectionPoints(ScanRays scanRays, SceneIndex index, SpatialHash occluders, SpriteBase ignore, long[] statistics) {
 
-				for (PVector item : intersections) {
+		RayCaster caster = new RayCaster(scanRays, index, occluders, ignore, statistics);
 
-					double currDist = scanLine.getStart().dist(item);
+		int size = scanRays.size();
 
-					if (currDist < dist) {
-						x = item.x;
-						y = item.y;
+		if (size == 0)
+			return caster.points;
 
-						dist = currDist;
+		double angleStep = scanRays.getAngleStep();
 
-					}
+		double firstDx = scanRays.getDx(0);
+		double firstDy = scanRays.getDy(0);
+		double firstT = caster.cast(firstDx, firstDy);
+
+		caster.addPoint(firstDx, firstDy, firstT);
+
+		double dx = firstDx;
+		double dy = firstDy;
+		double t = firstT;
+
+		for (int i = 1; i < size; i++) {
+
+			double nextDx = scanRays.getDx(i);
+			double nextDy = scanRays.getDy(i);
+			double nextT = caster.cast(nextDx, nextDy);
+
+			caster.refine(dx, dy, t, nextDx, nextDy, nextT, angleStep);
+			caster.addPoint(nextDx, nextDy, nextT);
+
+			dx = nextDx;
+			dy = nextDy;
+			t = nextT;
+
+		}
+
+		// the interval behind the last ray: it closes the circle or ends at the edge of the view cone
+		double remainingAngle = scanRays.getSweepAngle() - (size - 1) * angleStep;
+
+		if (scanRays.isFullCircle()) {
+
+			caster.refine(dx, dy, t, firstDx, firstDy, firstT, remainingAngle);
+
+		} else {
+
+			double cos = Math.cos(remainingAngle);
+			double sin = Math.sin(remainingAngle);
+
+			double endDx = dx * cos - dy * sin;
+			double endDy = dx * sin + dy * cos;
+			double endT = caster.cast(endDx, endDy);
+
+			caster.refine(dx, dy, t, endDx, endDy, endT, remainingAngle);
+			caster.addPoint(endDx, endDy, endT);
+
+		}
+
+		raysCast.add(caster.casts);
+
+		return caster.points;
+	}
+
+	/**
+	 * Get the intersecting points with scan lines which target the scene line endpoints. The visibility polygon
+	 * only changes its shape at the endpoints and where the scene lines cross the range circle, so three scan lines
+	 * at each of these angles (exact and +/- epsilon) give the exact polygon. The candidate lines are the lines of the
+	 * grid cells around the range circle. The edges of the view cone are added, then all scan lines are cast in angular order.
+	 * Between two neighbouring scan lines which both miss there is no wall, with the limit of the settings the arc of the
+	 * range is filled with points at the angle step of the uniform scan rays. They're only cast if agents occlude.
+	 *
+	 * @param scanRays The uniform scan rays, they define the origin, the cone, the range and the arc resolution
+	 * @param segments
+	 * @param grid Grid over the segments for the candidate lines
+	 * @param index
+	 * @param occluders Boxes of the agents, may be null
+	 * @param ignore The agent which casts the scan rays
+	 * @param statistics If not null, the counters at STATISTICS_TESTED_LINES and STATISTICS_HITS are increased
+	 * @return The points in angular order
+	 */
+	public List<PVector> getEndpointIntersectionPoints(ScanRays scanRays, SegmentBuffer segments, UniformGrid grid, SceneIndex index, SpatialHash occluders, SpriteBase ignore, long[] statistics) {
+
+		RayCaster caster = new RayCaster(scanRays, index, occluders, ignore, statistics);
+
+		double x = scanRays.getX();
+		double y = scanRays.getY();
+		double range = scanRays.getLength();
+		double angleStart = scanRays.getAngleStart();
+
+		Angles angles = new Angles(scanRays.isFullCircle() ? Math.PI * 2 : scanRays.getSweepAngle(), scanRays.isFullCircle());
+
+		BitSet candidates = new BitSet(segments.size());
+		grid.query(x, y, range, candidates);
+
+		for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+
+			addTarget(angles, x, y, angleStart, range, segments.x1[i], segments.y1[i]);
+			addTarget(angles, x, y, angleStart, range, segments.x2[i], segments.y2[i]);
+
+			// range circle: |start + s * d - origin| = range
+			double sx = segments.x1[i] - x;
+			double sy = segments.y1[i] - y;
+			double dx = segments.dx[i];
+			double dy = segments.dy[i];
+
+			double a = dx * dx + dy * dy;
+			double b = 2 * (dx * sx + dy * sy);
+			double c = sx * sx + sy * sy - range * range;
+
+			double discriminant = b * b - 4 * a * c;
+
+			if (a == 0 || discriminant < 0)
+				continue;
+
+			double root = Math.sqrt(discriminant);
+
+			for (double s : new double[] { (-b - root) / (2 * a), (-b + root) / (2 * a) }) {
+				if (s >= 0 && s <= 1) {
+					addTarget(angles, x, y, angleStart, range, x + sx + s * dx, y + sy + s * dy);
+				}
+			}
+
+		}
+
+		if (!angles.fullCircle) {
+			angles.add(0);
+			angles.add(angles.sweepAngle);
+		}
+
+		// a full circle without walls is a single arc, which needs a start
+		if (angles.fullCircle && angles.size == 0 && caster.limit) {
+			angles.add(0);
+		}
+
+		angles.sort();
+
+		double angleStep = scanRays.getAngleStep();
+
+		double firstT = Double.NaN;
+		double previousT = Double.NaN;
+
+		for (int i = 0; i < angles.size; i++) {
+
+			double angle = angleStart + angles.values[i];
+
+			double dx = Math.cos(angle) * range;
+			double dy = Math.sin(angle) * range;
+
+			double t = caster.cast(dx, dy);
+
+			if (i > 0 && t == Double.POSITIVE_INFINITY && previousT == Double.POSITIVE_INFINITY) {
+				addArc(caster, angleStart + angles.values[i - 1], angle, angleStep, range);
+			}
+
+			caster.addPoint(dx, dy, t);
+
+			if (i == 0) {
+				firstT = t;
+			}
+
+			previousT = t;
+
+		}
+
+		// the arc between the last and the first scan line of a full circle
+		if (angles.fullCircle && firstT == Double.POSITIVE_INFINITY && previousT == Double.POSITIVE_INFINITY) {
+			addArc(caster, angleStart + angles.values[angles.size - 1], angleStart + angles.values[0] + Math.PI * 2, angleStep, range);
+		}
+
+		raysCast.add(caster.casts);
+
+		return caster.points;
+	}
+
+	/**
+	 * Add the points on the arc of the range strictly between the angles of two scan lines which both missed.
+	 * Without agents as occluders nothing can be hit, so the points are added without casting.
+	 */
+	private void addArc(RayCaster caster, double from, double to, double angleStep, double range) {
+
+		if (!caster.limit || angleStep <= 0)
+			return;
+
+		for (double angle = from + angleStep; angle < to; angle += angleStep) {
+
+			double dx = Math.cos(angle) * range;
+			double dy = Math.sin(angle) * range;
+
+			double t = caster.occluders != null ? caster.cast(dx, dy) : Double.POSITIVE_INFINITY;
+
+			caster.addPoint(dx, dy, t);
+
+		}
+
+	}
+
+	/**
+	 * Add the angles of the scan lines which target the given point, if it is within the range
+	 */
+	private void addTarget(Angles angles, double x, double y, double angleStart, double range, double targetX, double targetY) {
+
+		double dx = targetX - x;
+		double dy = targetY - y;
+
+		// the circle crossings are on the range, a tolerance keeps them
+		if (dx * dx + dy * dy > range * range * (1 + 1E-9))
+			return;
+
+		double angle = Math.atan2(dy, dx) - angleStart;
+
+		angles.add(angle - ENDPOINT_EPSILON);
+		angles.add(angle);
+		angles.add(angle + ENDPOINT_EPSILON);
+
+	}
+
+	/**
+	 * Scan line angles relative to the start of the view cone. Angles outside of the cone are dropped.
+	 */
+	private static class Angles {
+
+		double sweepAngle;
+		boolean fullCircle;
+
+		double[] values = new double[64];
+		int size = 0;
+
+		public Angles(double sweepAngle, boolean fullCircle) {
+			this.sweepAngle = sweepAngle;
+			this.fullCircle = fullCircle;
+		}
+
+		public void add(double angle) {
+
+			// normalize to [0, 2pi)
+			angle -= Math.PI * 2 * Math.floor(angle / (Math.PI * 2));
+
+			if (!fullCircle && angle > sweepAngle)
+				return;
+
+			if (size == values.length) {
+				values = Arrays.copyOf(values, size * 2);
+			}
+
+			values[size++] = angle;
+
+		}
+
+		/**
+		 * Sort the angles and remove duplicates, e. g. of endpoints which are shared by two lines
+		 */
+		public void sort() {
+
+			Arrays.sort(values, 0, size);
+
+			int count = 0;
+
+			for (int i = 0; i < size; i++) {
+				if (count == 0 || values[i] - values[count - 1] > 1E-12) {
+					values[count++] = values[i];
 				}
+			}
+
+			size = count;
+
+		}
+
+	}
+
+	/**
+	 * Casts the rays of one agent and refines the intervals between them
+	 */
+	private class RayCaster {
+
+		List<PVector> points = new ArrayList<>();
+
+		double x;
+		double y;
+
+		SceneIndex index;
+		SpatialHash occluders;
+		SpriteBase ignore;
+		long[] statistics;
+
+		/**
+		 * Number of scan lines which have been cast
+		 */
+		int casts = 0;
+
+		boolean limit = settings().isLimitToScanLineLength();
+		double minAngle = Math.toRadians(settings().getRefinementAngle());
+
+		public RayCaster(ScanRays scanRays, SceneIndex index, SpatialHash occluders, SpriteBase ignore, long[] statistics) {
+
+			this.x = scanRays.getX();
+			this.y = scanRays.getY();
+			this.index = index;
+			this.occluders = occluders;
+			this.ignore = ignore;
+			this.statistics = statistics;
+
+		}
+
+		/**
+		 * Closest hit of the scan line with the scene lines and the agent boxes
+		 */
+		public double cast(double dx, double dy) {
+
+			casts++;
+
+			double t = index.nearestHit(x, y, dx, dy, statistics);
+
+			if (occluders != null) {
+				t = Math.min(t, occluders.nearestHit(x, y, dx, dy, ignore, t));
+			}
 
-				points.add(new PVector(x, y));
+			if (statistics != null && t != Double.POSITIVE_INFINITY) {
+				statistics[STATISTICS_HITS]++;
 			}
 
+			return t;
+		}
+
+		public void addPoint(double dx, double dy, double t) {
+			Algorithm.this.addPoint(points, x, y, dx, dy, t, limit);
+		}
+
+		/**
+		 * Add the points strictly between the scan lines a and b, which enclose the given angle
+		 */
+		public void refine(double aDx, double aDy, double aT, double bDx, double bDy, double bT, double angle) {
+
+			if (angle <= minAngle)
+				return;
+
+			// bisector: a rotated by half the angle
+			double cos = Math.cos(angle / 2);
+			double sin = Math.sin(angle / 2);
+
+			double mDx = aDx * cos - aDy * sin;
+			double mDy = aDx * sin + aDy * cos;
+			double mT = cast(mDx, mDy);
+
+			if (isSplit(aDx, aDy, aT, bDx, bDy, bT, mDx, mDy, mT)) {
+
+				refine(aDx, aDy, aT, mDx, mDy, mT, angle / 2);
+				addPoint(mDx, mDy, mT);
+				refine(mDx, mDy, mT, bDx, bDy, bT, angle / 2);
+
+			} else {
+
+				addPoint(mDx, mDy, mT);
+
+			}
+
+		}
+
+		/**
+		 * Check if the hits of an interval and its bisector m don't lie on a single wall
+		 */
+		private boolean isSplit(double aDx, double aDy, double aT, double bDx, double bDy, double bT, double mDx, double mDy, double mT) {
+
+			boolean aHit = aT != Double.POSITIVE_INFINITY;
+			boolean bHit = bT != Double.POSITIVE_INFINITY;
+			boolean mHit = mT != Double.POSITIVE_INFINITY;
+
+			// all missed: the interval is an arc of the scan line length
+			if (!aHit && !bHit && !mHit)
+				return false;
+
+			// the edge of a wall is within the interval
+			if (!aHit || !bHit || !mHit)
+				return true;
+
+			// distance of the bisector's hit from the line between the other hits, relative to the origin
+			double ax = aT * aDx;
+			double ay = aT * aDy;
+			double lineX = bT * bDx - ax;
+			double lineY = bT * bDy - ay;
+			double mx = mT * mDx - ax;
+			double my = mT * mDy - ay;
+
+			double length = Math.hypot(lineX, lineY);
+
+			double distance = length == 0 ? Math.hypot(mx, my) : Math.abs(lineX * my - lineY * mx) / length;
+
+			return distance > REFINEMENT_TOLERANCE;
+		}
+
+	}
+
+	/**
+	 * Get the closest intersecting point per scan line for the given scene lines. Only the closest
+	 * intersection parameter is kept while iterating over the scene lines, so there's no per scene line allocation.
+	 *
+	 * @param scanLines
+	 * @param sceneLines
+	 * @return
+	 */
+	public List<PVector> getIntersectionPoints(List<Line> scanLines, List<Line> sceneLines) {
+
+		List<PVector> points = new ArrayList<>(scanLines.size());
+
+		boolean limit = settings().isLimitToScanLineLength();
+
+		for (Line scanLine : scanLines) {
+
+			double x = scanLine.getStart().x;
+			double y = scanLine.getStart().y;
+			double dx = scanLine.getEnd().x - x;
+			double dy = scanLine.getEnd().y - y;
+
+			addPoint(points, x, y, dx, dy, getNearestIntersection(x, y, dx, dy, sceneLines), limit);
+
 		}
 
 		return points;
 	}
 
+	/**
+	 * Add the end point of the scan line start + t * (dx,dy).
+	 *
+	 * @param t Parameter of the closest intersection or Double.POSITIVE_INFINITY if there is none
+	 * @param limit If true, a scan line without intersection ends at the scan line length, otherwise it is skipped
+	 */
+	private void addPoint(List<PVector> points, double x, double y, double dx, double dy, double t, boolean limit) {
+
+		// lines intersect => we have an end point
+		if (t != Double.POSITIVE_INFINITY) {
+			points.add(new PVector(x + t * dx, y + t * dy));
+		}
+		// no intersection found => full scan line length
+		else if (limit) {
+			points.add(new PVector(x + dx, y + dy));
+		}
+
+	}
+
+	/**
+	 * Find the closest intersection of the scan line start + t * (dx,dy) with the scene lines.
+	 *
+	 * @return The parameter t in [0,1] of the closest intersection or Double.POSITIVE_INFINITY if there is none
+	 */
+	public static double getNearestIntersection(double x, double y, double dx, double dy, List<Line> sceneLines) {
+
+		double nearest = Double.POSITIVE_INFINITY;
+
+		for (int i = 0; i < sceneLines.size(); i++) {
+
+			double t = getIntersectionParameter(x, y, dx, dy, sceneLines.get(i));
+
+			if (t < nearest) {
+				nearest = t;
+			}
+
+		}
+
+		return nearest;
+	}
+
 	/**
 	 * Find intersecting lines
 	 * @param scanLine
@@ -125,10 +976,10 @@ public class Algorithm {
 			}
 
 			// check if the intersection area should be limited to a visible area
-			if (Settings.get().isLimitToScanLineLength()) {
+			if (settings().isLimitToScanLineLength()) {
 
 				// maximum scan line length
-				double maxLength = Settings.get().getScanLineLength();
+				double maxLength = settings().getScanLineLength();
 
 				PVector start = scanLine.getStart();
 
@@ -158,6 +1009,35 @@ public class Algorithm {
 		return list;
 	}
 
+	/**
+	 * Find the intersection of the scan line start + t * (dx,dy) with the given line.
+	 *
+	 * @return The parameter t in [0,1] of the intersection or Double.POSITIVE_INFINITY if the lines don't intersect
+	 */
+	public static double getIntersectionParameter(double x, double y, double dx, double dy, Line line) {
+
+		double bx = line.getEnd().x - line.getStart().x;
+		double by = line.getEnd().y - line.getStart().y;
+
+		double denominator = dx * by - dy * bx;
+
+		if (denominator == 0)
+			return Double.POSITIVE_INFINITY;
+
+		double cx = line.getStart().x - x;
+		double cy = line.getStart().y - y;
+
+		double t = (cx * by - cy * bx) / denominator;
+		if (t < 0 || t > 1)
+			return Double.POSITIVE_INFINITY;
+
+		double u = (cx * dy - cy * dx) / denominator;
+		if (u < 0 || u > 1)
+			return Double.POSITIVE_INFINITY;
+
+		return t;
+	}
+
 	// find intersection point of 2 line segments
 	//
 	// http://stackoverflow.com/questions/563198/how-do-you-detect-where-two-line-segments-intersect
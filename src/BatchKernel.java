@@ -0,0 +1,154 @@
+package AgentsLineOfSight;
+
+import java.util.BitSet;
+
+/**
+ * Brute force intersection kernel which tests one scan line against blocks of segments. The block loop
+ * reads the primitive arrays of the segment buffer sequentially and has no branches, no early exits and
+ * no divisions, it only computes the intersection margins of all lanes. That's the loop shape which the
+ * JIT compiler can turn into SIMD instructions, and it avoids the unpredictable branches of the scalar kernel.
+ * The few lanes with an intersection are resolved in a separate pass over the block.
+ *
+ * The plain scalar kernel of the segment buffer is the reference implementation, BatchKernelTest compares both.
+ *
+ * This kernel only relies on the JIT compiler. If the vector directory is on the class path and the JVM has the
+ * Vector API, create() returns the VectorKernel instead, which uses explicit SIMD instructions.
+ */
+public class BatchKernel implements SceneIndex {
+
+	/**
+	 * Number of segments which are processed per block. The margins of a block stay in the L1 cache until the
+	 * second pass reads them, larger blocks measured the same.
+	 */
+	private static final int BLOCK_SIZE = 64;
+
+	SegmentBuffer segments;
+
+	/**
+	 * Intersection margins of t and u for the current block, one pair of arrays per thread
+	 */
+	ThreadLocal<double[][]> blockMargins = ThreadLocal.withInitial(() -> new double[2][BLOCK_SIZE]);
+
+	/**
+	 * The lines which are found, null for all lines. All lanes are tested anyway, the filter is applied to the hits.
+	 */
+	BitSet filter = null;
+
+	public BatchKernel(SegmentBuffer segments) {
+		this.segments = segments;
+	}
+
+	/**
+	 * Kernel for the given lines only
+	 */
+	public BatchKernel(SegmentBuffer segments, BitSet filter) {
+		this.segments = segments;
+		this.filter = filter;
+	}
+
+	@Override
+	public SceneIndex filter(BitSet lines) {
+		return new BatchKernel(segments, lines);
+	}
+
+	/**
+	 * Create the fastest available batch kernel for the segments
+	 */
+	public static BatchKernel create(SegmentBuffer segments) {
+
+		try {
+
+			return (BatchKernel) Class.forName("AgentsLineOfSight.VectorKernel").getDeclaredConstructor(SegmentBuffer.class).newInstance(segments);
+
+		} catch (ReflectiveOperationException | LinkageError e) {
+
+			// no vector kernel on the class path or no vector api in the jvm
+			return new BatchKernel(segments);
+
+		}
+
+	}
+
+	@Override
+	public double nearestHit(double x, double y, double dx, double dy, long[] tests) {
+
+		if (tests != null) {
+			tests[0] += segments.size;
+		}
+
+		double[][] margins = blockMargins.get();
+		double[] tMargins = margins[0];
+		double[] uMargins = margins[1];
+
+		double nearest = Double.POSITIVE_INFINITY;
+
+		for (int start = 0; start < segments.size; start += BLOCK_SIZE) {
+
+			int count = Math.min(BLOCK_SIZE, segments.size - start);
+
+			intersectBlock(start, count, x, y, dx, dy, tMargins, uMargins);
+
+			// only the lanes with a hit need the division
+			for (int i = 0; i < count; i++) {
+
+				if (tMargins[i] < 0 || uMargins[i] < 0)
+					continue;
+
+				double t = intersectionParameter(start + i, x, y, dx, dy);
+
+				if (t < nearest) {
+					nearest = t;
+				}
+			}
+
+		}
+
+		return nearest;
+	}
+
+	/**
+	 * Test the scan line against the segments start ... start + count - 1. Instead of dividing by the
+	 * denominator d, the numerators of t and u are multiplied with it: t in [0,1] <=> t*d * (d*d - t*d) >= 0.
+	 * The loop has only loads, multiplications, subtractions and stores. Both margins are non-negative for an intersection.
+	 */
+	private void intersectBlock(int start, int count, double x, double y, double dx, double dy, double[] tMargins, double[] uMargins) {
+
+		double[] x1 = segments.x1;
+		double[] y1 = segments.y1;
+		double[] bx = segments.dx;
+		double[] by = segments.dy;
+
+		for (int i = 0; i < count; i++) {
+
+			int segment = start + i;
+
+			double denominator = dx * by[segment] - dy * bx[segment];
+
+			double cx = x1[segment] - x;
+			double cy = y1[segment] - y;
+
+			double square = denominator * denominator;
+			double t = (cx * by[segment] - cy * bx[segment]) * denominator;
+			double u = (cx * dy - cy * dx) * denominator;
+
+			tMargins[i] = t * (square - t);
+			uMargins[i] = u * (square - u);
+
+		}
+
+	}
+
+	/**
+	 * Intersection parameter of a segment for which the block test found an intersection. The margins are rounded
+	 * differently than the divided values, so the lane is resolved with the scalar test: parallel segments and
+	 * intersections just beyond the ends are rejected here, the same way as in the scalar kernel.
+	 */
+	double intersectionParameter(int segment, double x, double y, double dx, double dy) {
+
+		if (filter != null && !filter.get(segment))
+			return Double.POSITIVE_INFINITY;
+
+		return segments.intersect(segment, x, y, dx, dy);
+	}
+
+}
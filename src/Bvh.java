@@ -0,0 +1,285 @@
+package AgentsLineOfSight;
+
+import java.util.BitSet;
+
+/**
+ * Bounding volume hierarchy over the scene lines. The lines are split recursively at the median of their
+ * centers along the longer axis of the node's bounding box. In contrast to the uniform grid the nodes adapt
+ * to the line distribution, so that long outer walls and dense clusters of short room walls are both handled well.
+ *
+ * The tree is stored in flat arrays in depth first order: the left child of a node is the next node,
+ * the index of the right child is stored explicitly.
+ */
+public class Bvh implements SceneIndex {
+
+	/**
+	 * Maximum number of lines in a leaf
+	 */
+	private static final int LEAF_SIZE = 4;
+
+	/**
+	 * The node bounds are padded, otherwise a scan line through a line endpoint on the border of a box can miss the box due to rounding
+	 */
+	private static final double EPSILON = 1E-6;
+
+	SegmentBuffer segments;
+
+	/**
+	 * Line indices, sorted so that the lines of every leaf are consecutive
+	 */
+	int[] order;
+
+	// node data
+	double[] nodeMinX;
+	double[] nodeMinY;
+	double[] nodeMaxX;
+	double[] nodeMaxY;
+	int[] rightChild;
+	int[] start;
+	int[] count;
+
+	int nodeCount = 0;
+
+	/**
+	 * The lines which are found, null for all lines
+	 */
+	BitSet filter = null;
+
+	// line centers, only used for building
+	double[] centerX;
+	double[] centerY;
+
+	public Bvh(SegmentBuffer segments) {
+
+		this.segments = segments;
+
+		int size = segments.size();
+
+		order = new int[size];
+		centerX = new double[size];
+		centerY = new double[size];
+
+		for (int i = 0; i < size; i++) {
+
+			order[i] = i;
+			centerX[i] = (segments.x1[i] + segments.x2[i]) / 2;
+			centerY[i] = (segments.y1[i] + segments.y2[i]) / 2;
+
+		}
+
+		// a binary tree with n leaves has 2n-1 nodes
+		int capacity = Math.max(1, 2 * size);
+
+		nodeMinX = new double[capacity];
+		nodeMinY = new double[capacity];
+		nodeMaxX = new double[capacity];
+		nodeMaxY = new double[capacity];
+		rightChild = new int[capacity];
+		start = new int[capacity];
+		count = new int[capacity];
+
+		build(0, size);
+
+		centerX = null;
+		centerY = null;
+
+	}
+
+	/**
+	 * View of the tree which only finds the given lines
+	 */
+	private Bvh(Bvh bvh, BitSet filter) {
+
+		this.segments = bvh.segments;
+		this.order = bvh.order;
+		this.nodeMinX = bvh.nodeMinX;
+		this.nodeMinY = bvh.nodeMinY;
+		this.nodeMaxX = bvh.nodeMaxX;
+		this.nodeMaxY = bvh.nodeMaxY;
+		this.rightChild = bvh.rightChild;
+		this.start = bvh.start;
+		this.count = bvh.count;
+		this.nodeCount = bvh.nodeCount;
+		this.filter = filter;
+
+	}
+
+	@Override
+	public SceneIndex filter(BitSet lines) {
+		return new Bvh(this, lines);
+	}
+
+	/**
+	 * Create the node for the lines order[from] ... order[to-1] and its subtree
+	 *
+	 * @return Index of the node
+	 */
+	private int build(int from, int to) {
+
+		int node = nodeCount++;
+
+		double minX = Double.POSITIVE_INFINITY;
+		double minY = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY;
+		double maxY = Double.NEGATIVE_INFINITY;
+
+		for (int i = from; i < to; i++) {
+
+			int segment = order[i];
+
+			minX = Math.min(minX, segments.minX[segment]);
+			minY = Math.min(minY, segments.minY[segment]);
+			maxX = Math.max(maxX, segments.maxX[segment]);
+			maxY = Math.max(maxY, segments.maxY[segment]);
+
+		}
+
+		nodeMinX[node] = minX - EPSILON;
+		nodeMinY[node] = minY - EPSILON;
+		nodeMaxX[node] = maxX + EPSILON;
+		nodeMaxY[node] = maxY + EPSILON;
+
+		// leaf
+		if (to - from <= LEAF_SIZE) {
+
+			rightChild[node] = -1;
+			start[node] = from;
+			count[node] = to - from;
+
+			return node;
+		}
+
+		// split at the median along the longer axis
+		boolean splitX = (maxX - minX) >= (maxY - minY);
+		int mid = (from + to) / 2;
+
+		select(from, to - 1, mid, splitX ? centerX : centerY);
+
+		build(from, mid);
+		rightChild[node] = build(mid, to);
+
+		return node;
+	}
+
+	/**
+	 * Partially sort order[left] ... order[right] so that the element at index k is the one which would be there if
+	 * the range were sorted by the given keys (quickselect).
+	 */
+	private void select(int left, int right, int k, double[] keys) {
+
+		while (right > left) {
+
+			double pivot = keys[order[(left + right) >>> 1]];
+
+			int i = left;
+			int j = right;
+
+			while (i <= j) {
+
+				while (keys[order[i]] < pivot)
+					i++;
+
+				while (keys[order[j]] > pivot)
+					j--;
+
+				if (i <= j) {
+					int tmp = order[i];
+					order[i] = order[j];
+					order[j] = tmp;
+					i++;
+					j--;
+				}
+			}
+
+			if (k <= j) {
+				right = j;
+			} else if (k >= i) {
+				left = i;
+			} else {
+				return;
+			}
+		}
+
+	}
+
+	@Override
+	public double nearestHit(double x, double y, double dx, double dy, long[] tests) {
+
+		if (segments.size() == 0)
+			return Double.POSITIVE_INFINITY;
+
+		double invDx = 1.0 / dx;
+		double invDy = 1.0 / dy;
+
+		if (entry(0, x, y, dx, dy, invDx, invDy) == Double.POSITIVE_INFINITY)
+			return Double.POSITIVE_INFINITY;
+
+		return nearestHit(0, x, y, dx, dy, invDx, invDy, Double.POSITIVE_INFINITY, tests);
+	}
+
+	/**
+	 * Visit the subtree of the given node, the child which is entered first by the scan line is visited first.
+	 * Children which are entered behind the closest hit found so far are skipped.
+	 */
+	private double nearestHit(int node, double x, double y, double dx, double dy, double invDx, double invDy, double nearest, long[] tests) {
+
+		// leaf: test the lines
+		if (rightChild[node] == -1) {
+
+			if (tests != null) {
+				tests[0] += count[node];
+			}
+
+			for (int i = start[node]; i < start[node] + count[node]; i++) {
+
+				if (filter != null && !filter.get(order[i]))
+					continue;
+
+				double t = segments.intersect(order[i], x, y, dx, dy);
+
+				if (t < nearest) {
+					nearest = t;
+				}
+
+			}
+
+			return nearest;
+		}
+
+		int left = node + 1;
+		int right = rightChild[node];
+
+		double leftEntry = entry(left, x, y, dx, dy, invDx, invDy);
+		double rightEntry = entry(right, x, y, dx, dy, invDx, invDy);
+
+		if (leftEntry <= rightEntry) {
+
+			if (leftEntry < nearest)
+				nearest = nearestHit(left, x, y, dx, dy, invDx, invDy, nearest, tests);
+
+			if (rightEntry < nearest)
+				nearest = nearestHit(right, x, y, dx, dy, invDx, invDy, nearest, tests);
+
+		} else {
+
+			if (rightEntry < nearest)
+				nearest = nearestHit(right, x, y, dx, dy, invDx, invDy, nearest, tests);
+
+			if (leftEntry < nearest)
+				nearest = nearestHit(left, x, y, dx, dy, invDx, invDy, nearest, tests);
+
+		}
+
+		return nearest;
+	}
+
+	/**
+	 * Slab test of the scan line against the bounding box of the node
+	 *
+	 * @return The parameter t at which the scan line enters the box or Double.POSITIVE_INFINITY if it misses the box
+	 */
+	private double entry(int node, double x, double y, double dx, double dy, double invDx, double invDy) {
+		return RayBox.entry(nodeMinX[node], nodeMinY[node], nodeMaxX[node], nodeMaxY[node], x, y, dx, dy, invDx, invDy);
+	}
+
+}
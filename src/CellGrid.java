@@ -0,0 +1,124 @@
+package AgentsLineOfSight;
+
+/**
+ * Uniform grid whose cells are traversed along scan lines (DDA). The subclasses decide what the cells contain
+ * and how a cell is tested, the traversal stops at the first cell which contains a hit.
+ *
+ * @param <C> Additional data of a query which is passed on to the cell tests, e. g. a counter
+ */
+public abstract class CellGrid<C> {
+
+	// grid bounds
+	double minX;
+	double minY;
+	double maxX;
+	double maxY;
+
+	double cellSize;
+
+	int cols;
+	int rows;
+
+	int col(double x) {
+		return Math.max(0, Math.min(cols - 1, (int) Math.floor((x - minX) / cellSize)));
+	}
+
+	int row(double y) {
+		return Math.max(0, Math.min(rows - 1, (int) Math.floor((y - minY) / cellSize)));
+	}
+
+	/**
+	 * Find the closest hit in the given cell
+	 *
+	 * @param nearest The parameter t of the closest hit found so far
+	 * @return The parameter t of the closest hit in the cell if it is closer than nearest, otherwise nearest
+	 */
+	abstract double nearestHitInCell(int cell, double x, double y, double dx, double dy, double nearest, C context);
+
+	/**
+	 * Visit the cells along the scan line start + t * (dx,dy) in the order in which the scan line crosses them,
+	 * until a cell contains a hit or the scan line leaves the grid.
+	 *
+	 * @param tLimit The traversal ends at this parameter, cells behind it aren't visited
+	 * @return The parameter t of the closest hit or Double.POSITIVE_INFINITY if there is none. Hits of the last cell
+	 *         may be behind tLimit.
+	 */
+	double traverse(double x, double y, double dx, double dy, double tLimit, C context) {
+
+		// clip the scan line against the grid bounds
+		double tStart = 0;
+		double tEnd = tLimit;
+
+		if (dx != 0) {
+			double t1 = (minX - x) / dx;
+			double t2 = (minX + cols * cellSize - x) / dx;
+			tStart = Math.max(tStart, Math.min(t1, t2));
+			tEnd = Math.min(tEnd, Math.max(t1, t2));
+		} else if (x < minX || x > minX + cols * cellSize) {
+			return Double.POSITIVE_INFINITY;
+		}
+
+		if (dy != 0) {
+			double t1 = (minY - y) / dy;
+			double t2 = (minY + rows * cellSize - y) / dy;
+			tStart = Math.max(tStart, Math.min(t1, t2));
+			tEnd = Math.min(tEnd, Math.max(t1, t2));
+		} else if (y < minY || y > minY + rows * cellSize) {
+			return Double.POSITIVE_INFINITY;
+		}
+
+		if (tStart > tEnd)
+			return Double.POSITIVE_INFINITY;
+
+		// cell in which the traversal starts
+		int col = col(x + tStart * dx);
+		int row = row(y + tStart * dy);
+
+		int stepX = dx > 0 ? 1 : (dx < 0 ? -1 : 0);
+		int stepY = dy > 0 ? 1 : (dy < 0 ? -1 : 0);
+
+		// parameter t at which the scan line crosses the next vertical/horizontal cell border
+		double tMaxX = Double.POSITIVE_INFINITY;
+		double tMaxY = Double.POSITIVE_INFINITY;
+		double tDeltaX = Double.POSITIVE_INFINITY;
+		double tDeltaY = Double.POSITIVE_INFINITY;
+
+		if (stepX != 0) {
+			tMaxX = (minX + (stepX > 0 ? col + 1 : col) * cellSize - x) / dx;
+			tDeltaX = cellSize / Math.abs(dx);
+		}
+
+		if (stepY != 0) {
+			tMaxY = (minY + (stepY > 0 ? row + 1 : row) * cellSize - y) / dy;
+			tDeltaY = cellSize / Math.abs(dy);
+		}
+
+		double nearest = Double.POSITIVE_INFINITY;
+
+		while (true) {
+
+			nearest = nearestHitInCell(row * cols + col, x, y, dx, dy, nearest, context);
+
+			double tExit = Math.min(tMaxX, tMaxY);
+
+			// the closest hit is inside this cell => the cells further away can't contain a closer one
+			if (nearest <= tExit || tExit >= tEnd)
+				break;
+
+			if (tMaxX < tMaxY) {
+				col += stepX;
+				tMaxX += tDeltaX;
+			} else {
+				row += stepY;
+				tMaxY += tDeltaY;
+			}
+
+			if (col < 0 || col >= cols || row < 0 || row >= rows)
+				break;
+
+		}
+
+		return nearest;
+	}
+
+}
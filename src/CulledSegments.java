@@ -0,0 +1,171 @@
+package AgentsLineOfSight;
+
+import java.util.BitSet;
+
+/**
+ * The scene lines which an agent can see at all, i. e. the lines which intersect the sector of its range circle
+ * and view cone. It is built once per agent and frame before the scan lines are cast, then the selected engine is
+ * filtered to these lines (see {@link SceneIndex#filter(BitSet)}). The scan lines don't leave the sector, so the result
+ * is the same as with all lines.
+ *
+ * The candidates are the lines of the grid cells around the range circle, they are tested against the circle
+ * and the sector exactly.
+ */
+public class CulledSegments {
+
+	/**
+	 * Angle in radians by which the cone is widened, so that scan lines on the cone edges keep their lines
+	 */
+	private static final double ANGLE_EPSILON = 1E-6;
+
+	private static final double TWO_PI = Math.PI * 2;
+
+	SegmentBuffer segments;
+
+	/**
+	 * Indices of the lines in the sector
+	 */
+	BitSet lines;
+	int size = 0;
+
+	// sector
+	double x;
+	double y;
+	double range;
+	double angleStart;
+	double sweepAngle;
+
+	/**
+	 * Cull the lines of the segment buffer
+	 *
+	 * @param segments
+	 * @param grid Grid over the segments for the candidate lines
+	 * @param x Origin x
+	 * @param y Origin y
+	 * @param range Radius of the range circle
+	 * @param angleStart Start angle of the view cone
+	 * @param sweepAngle Opening angle of the view cone, 2 pi or more for a full circle
+	 */
+	public CulledSegments(SegmentBuffer segments, UniformGrid grid, double x, double y, double range, double angleStart, double sweepAngle) {
+
+		this.segments = segments;
+		this.x = x;
+		this.y = y;
+		this.range = range;
+		this.angleStart = angleStart;
+		this.sweepAngle = sweepAngle;
+
+		lines = new BitSet(segments.size());
+		grid.query(x, y, range, lines);
+
+		for (int i = lines.nextSetBit(0); i >= 0; i = lines.nextSetBit(i + 1)) {
+
+			if (intersectsSector(i)) {
+				size++;
+			} else {
+				lines.clear(i);
+			}
+
+		}
+
+	}
+
+	/**
+	 * Check if the line intersects the sector. A line which doesn't have an endpoint in the sector must cross its
+	 * border, i. e. one of the cone edges or the arc.
+	 */
+	private boolean intersectsSector(int i) {
+
+		double sx = segments.x1[i] - x;
+		double sy = segments.y1[i] - y;
+		double dx = segments.dx[i];
+		double dy = segments.dy[i];
+
+		// circle: closest point of the line to the origin
+		double lengthSquared = dx * dx + dy * dy;
+		double s = lengthSquared == 0 ? 0 : Math.max(0, Math.min(1, -(sx * dx + sy * dy) / lengthSquared));
+
+		double cx = sx + s * dx;
+		double cy = sy + s * dy;
+
+		if (cx * cx + cy * cy > range * range)
+			return false;
+
+		if (sweepAngle >= TWO_PI)
+			return true;
+
+		// endpoints in the sector
+		if (isInSector(sx, sy) || isInSector(sx + dx, sy + dy))
+			return true;
+
+		// cone edges
+		if (segments.intersect(i, x, y, Math.cos(angleStart) * range, Math.sin(angleStart) * range) != Double.POSITIVE_INFINITY)
+			return true;
+
+		if (segments.intersect(i, x, y, Math.cos(angleStart + sweepAngle) * range, Math.sin(angleStart + sweepAngle) * range) != Double.POSITIVE_INFINITY)
+			return true;
+
+		// arc: |start + s * d - origin| = range
+		double b = 2 * (dx * sx + dy * sy);
+		double c = sx * sx + sy * sy - range * range;
+
+		double discriminant = b * b - 4 * lengthSquared * c;
+
+		if (lengthSquared == 0 || discriminant < 0)
+			return false;
+
+		double root = Math.sqrt(discriminant);
+
+		double s1 = (-b - root) / (2 * lengthSquared);
+		double s2 = (-b + root) / (2 * lengthSquared);
+
+		if (s1 >= 0 && s1 <= 1 && isInCone(sx + s1 * dx, sy + s1 * dy))
+			return true;
+
+		if (s2 >= 0 && s2 <= 1 && isInCone(sx + s2 * dx, sy + s2 * dy))
+			return true;
+
+		return false;
+	}
+
+	/**
+	 * Check if the point relative to the origin is within the range and the cone
+	 */
+	private boolean isInSector(double px, double py) {
+		return px * px + py * py <= range * range && isInCone(px, py);
+	}
+
+	/**
+	 * Check if the direction of the point relative to the origin is within the cone
+	 */
+	private boolean isInCone(double px, double py) {
+
+		double angle = Math.atan2(py, px) - angleStart;
+
+		angle -= TWO_PI * Math.floor(angle / TWO_PI);
+
+		return angle <= sweepAngle + ANGLE_EPSILON || angle >= TWO_PI - ANGLE_EPSILON;
+	}
+
+	/**
+	 * Indices of the lines in the sector, the filter for the scene index
+	 */
+	public BitSet getLines() {
+		return lines;
+	}
+
+	/**
+	 * Number of lines in the sector
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Number of lines which have been culled
+	 */
+	public int getCulledCount() {
+		return segments.size() - size;
+	}
+
+}
@@ -0,0 +1,47 @@
+package AgentsLineOfSight;
+
+/**
+ * Unit vectors of the scan lines relative to the start angle of the sweep: direction i has the angle i * angleStep.
+ * Cos and sin are calculated once per scan line count and sweep angle instead of once per scan line, agent and frame.
+ */
+public class DirectionTable {
+
+	int count;
+	double sweepAngle;
+	double angleStep;
+
+	double[] cos;
+	double[] sin;
+
+	public DirectionTable(int count, double sweepAngle) {
+
+		this.count = count;
+		this.sweepAngle = sweepAngle;
+		this.angleStep = sweepAngle / count;
+
+		cos = new double[count];
+		sin = new double[count];
+
+		for (int i = 0; i < count; i++) {
+
+			double angle = i * angleStep;
+
+			cos[i] = Math.cos(angle);
+			sin[i] = Math.sin(angle);
+
+		}
+
+	}
+
+	/**
+	 * Check if the table can be used for the given parameters
+	 */
+	public boolean matches(int count, double sweepAngle) {
+		return this.count == count && this.sweepAngle == sweepAngle;
+	}
+
+	public int size() {
+		return count;
+	}
+
+}
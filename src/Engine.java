@@ -0,0 +1,34 @@
+package AgentsLineOfSight;
+
+/**
+ * The engines which can be used to find the intersections of the scan lines with the scene lines
+ */
+public enum Engine {
+
+	/**
+	 * Test every scan line against every scene line
+	 */
+	BRUTE_FORCE,
+
+	/**
+	 * Walk the cells of a uniform grid along the scan line and test only the scene lines of these cells
+	 */
+	GRID,
+
+	/**
+	 * Descend a bounding volume hierarchy along the scan line and test only the scene lines of the leaves it enters
+	 */
+	BVH,
+
+	/**
+	 * Test every scan line against blocks of scene lines with a branch free kernel which the JIT can vectorize
+	 */
+	BATCH,
+
+	/**
+	 * Exact visibility polygon via an angular sweep over the segment endpoints, doesn't use scan lines. The agent boxes,
+	 * the culling, the scan line budget and the scan mode don't apply to it.
+	 */
+	SWEEP
+
+}
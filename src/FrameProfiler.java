@@ -0,0 +1,134 @@
+package AgentsLineOfSight;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Duration histograms of the phases of a frame. The phases are measured with System.nanoTime(), the histograms
+ * show the spikes which an average frame rate hides.
+ *
+ * A profiler isn't thread safe, it must only be used by one thread. The simulation has its own profiler and passes
+ * its summary to the renderer in the snapshots, the renderer measures its phases with another one.
+ */
+public class FrameProfiler {
+
+	Map<Phase, LatencyHistogram> histograms = new EnumMap<>(Phase.class);
+
+	public FrameProfiler() {
+
+		for (Phase phase : Phase.values()) {
+			histograms.put(phase, new LatencyHistogram());
+		}
+
+	}
+
+	/**
+	 * Record the duration from start until now
+	 *
+	 * @param start Start time of the phase from System.nanoTime()
+	 * @return The current time, i. e. the start of the next phase
+	 */
+	public long record(Phase phase, long start) {
+
+		long now = System.nanoTime();
+
+		histograms.get(phase).record(now - start);
+
+		return now;
+	}
+
+	public LatencyHistogram getHistogram(Phase phase) {
+		return histograms.get(phase);
+	}
+
+	public void reset() {
+
+		for (LatencyHistogram histogram : histograms.values()) {
+			histogram.reset();
+		}
+
+	}
+
+	/**
+	 * Add the durations of the other profiler to this one, e. g. to write the phases of several threads into one file
+	 */
+	public void merge(FrameProfiler other) {
+
+		for (Phase phase : Phase.values()) {
+			histograms.get(phase).merge(other.histograms.get(phase));
+		}
+
+	}
+
+	/**
+	 * Header line and one line per measured phase with the percentiles and the maximum in milliseconds
+	 */
+	public List<String> getSummary() {
+
+		List<String> lines = new ArrayList<>();
+
+		lines.add(getSummaryHeader());
+		lines.addAll(getPhaseSummary());
+
+		return lines;
+	}
+
+	public static String getSummaryHeader() {
+		return String.format(Locale.US, "%-18s %7s %7s %7s %7s", "Phase [ms]", "p50", "p95", "p99", "max");
+	}
+
+	/**
+	 * The lines of the summary without the header
+	 */
+	public List<String> getPhaseSummary() {
+
+		List<String> lines = new ArrayList<>();
+
+		for (Phase phase : Phase.values()) {
+
+			LatencyHistogram histogram = histograms.get(phase);
+
+			// e. g. the paint phases in the headless simulation
+			if (histogram.getCount() == 0)
+				continue;
+
+			lines.add(String.format(Locale.US, "%-18s %7.2f %7.2f %7.2f %7.2f", phase, millis(histogram.getPercentile(50)), millis(histogram.getPercentile(95)), millis(histogram.getPercentile(99)), millis(histogram.getMax())));
+
+		}
+
+		return lines;
+	}
+
+	/**
+	 * Write the statistics of all phases as CSV, durations in milliseconds
+	 */
+	public void writeCsv(Path path) throws IOException {
+
+		try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(path))) {
+
+			writer.println("phase,count,mean,p50,p95,p99,max");
+
+			for (Phase phase : Phase.values()) {
+
+				LatencyHistogram histogram = histograms.get(phase);
+
+				writer.println(String.format(Locale.US, "%s,%d,%.3f,%.3f,%.3f,%.3f,%.3f", phase.name(), histogram.getCount(), histogram.getMean() / 1_000_000.0, millis(histogram.getPercentile(50)), millis(histogram.getPercentile(95)), millis(histogram.getPercentile(99)), millis(histogram.getMax())));
+
+			}
+
+		}
+
+	}
+
+	private static double millis(long nanos) {
+		return nanos / 1_000_000.0;
+	}
+
+}
@@ -0,0 +1,105 @@
+package AgentsLineOfSight;
+
+import java.util.Arrays;
+
+/**
+ * Histogram of durations with a fixed resolution. Recording is a single array increment, the percentiles
+ * are calculated from the cumulative bucket counts. Durations beyond the range are counted in the last bucket,
+ * the maximum is kept exactly.
+ */
+public class LatencyHistogram {
+
+	/**
+	 * Width of a bucket in nanoseconds
+	 */
+	private static final long RESOLUTION = 10_000;
+
+	/**
+	 * Number of buckets, i. e. the range is 200 ms
+	 */
+	private static final int BUCKET_COUNT = 20_000;
+
+	long[] buckets = new long[BUCKET_COUNT];
+
+	long count = 0;
+	long sum = 0;
+	long max = 0;
+
+	public void record(long nanos) {
+
+		int bucket = (int) Math.min(BUCKET_COUNT - 1, Math.max(0, nanos) / RESOLUTION);
+
+		buckets[bucket]++;
+
+		count++;
+		sum += nanos;
+		max = Math.max(max, nanos);
+
+	}
+
+	/**
+	 * Duration below which the given share of the recorded durations lies
+	 *
+	 * @param percentile Share in [0,100]
+	 * @return Upper bound of the bucket in nanoseconds, at most the maximum
+	 */
+	public long getPercentile(double percentile) {
+
+		if (count == 0)
+			return 0;
+
+		long rank = (long) Math.ceil(percentile / 100.0 * count);
+
+		long cumulative = 0;
+
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+
+			cumulative += buckets[i];
+
+			if (cumulative >= rank) {
+				return Math.min(max, (i + 1) * RESOLUTION);
+			}
+
+		}
+
+		return max;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public long getMax() {
+		return max;
+	}
+
+	public double getMean() {
+		return count == 0 ? 0 : (double) sum / count;
+	}
+
+	/**
+	 * Add the durations of the other histogram to this one
+	 */
+	public void merge(LatencyHistogram other) {
+
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			buckets[i] += other.buckets[i];
+		}
+
+		count += other.count;
+		sum += other.sum;
+		max = Math.max(max, other.max);
+
+	}
+
+	public void reset() {
+
+		Arrays.fill(buckets, 0);
+
+		count = 0;
+		sum = 0;
+		max = 0;
+
+	}
+
+}
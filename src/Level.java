@@ -1,6 +1,7 @@
 package AgentsLineOfSight;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Random;
 
@@ -9,10 +10,15 @@ import javafx.geometry.Bounds;
 
 public class Level {
 
-	public double cellSize = Settings.get().getCanvasWidth() / Settings.get().getHorizontalCellCount();
+	/**
+	 * The settings at the time the level is created, it's created on the simulation thread
+	 */
+	SettingsSnapshot settings = Settings.get().getSnapshot();
+
+	public double cellSize = settings.getCanvasWidth() / settings.getHorizontalCellCount();
 	public double margin = cellSize;
-	public double width = Settings.get().getCanvasWidth() - margin * 2;
-	public double height = Settings.get().getCanvasHeight()  - margin * 2;
+	public double width = settings.getCanvasWidth() - margin * 2;
+	public double height = settings.getCanvasHeight()  - margin * 2;
 
 	public double minX = margin;
 	public double minY = margin;
@@ -22,8 +28,29 @@ public class Level {
 	public double maxRoomWidth = 200;
 	public double maxRoomHeight = 200;
 
+	/**
+	 * Endpoints within this distance are welded when the scene lines are merged
+	 */
+	public static final double WELD_EPSILON = 1E-6;
+
 	List<Line> sceneLines = null;
+
+	/**
+	 * Number of scene lines before merging
+	 */
+	int rawLineCount = 0;
 	List<Bounds> roomDimensions = null;
+
+	SegmentBuffer segments = null;
+
+	/**
+	 * Spatial indices over the segments, each one is built when it's used for the first time. The agents of a tick
+	 * may ask for them concurrently.
+	 */
+	volatile UniformGrid grid = null;
+	volatile Bvh bvh = null;
+	volatile BatchKernel batchKernel = null;
+	volatile VisibilitySweep visibilitySweep = null;
 	
 	Random rnd = new Random();
 
@@ -31,23 +58,130 @@ public class Level {
 	public Level() {
 		generate();
 	}
+
+	/**
+	 * Level with reproducible random lines and rooms
+	 *
+	 * @param seed Seed of the random number generator
+	 */
+	public Level(long seed) {
+		rnd = new Random(seed);
+		generate();
+	}
 	
 	public List<Line> getLines() {
 		return sceneLines;
 	}
 
+	/**
+	 * Number of scene lines before merging, see getLines().size() for the number after merging
+	 */
+	public int getRawLineCount() {
+		return rawLineCount;
+	}
+
 	public List<Bounds> getRoomDimensions() {
 		return roomDimensions;
 	}
 
+	public SegmentBuffer getSegments() {
+		return segments;
+	}
+
+	public UniformGrid getGrid() {
+
+		UniformGrid index = grid;
+
+		if (index == null) {
+			synchronized (this) {
+				if (grid == null) {
+					grid = new UniformGrid(segments, cellSize);
+				}
+				index = grid;
+			}
+		}
+
+		return index;
+	}
+
+	public Bvh getBvh() {
+
+		Bvh index = bvh;
+
+		if (index == null) {
+			synchronized (this) {
+				if (bvh == null) {
+					bvh = new Bvh(segments);
+				}
+				index = bvh;
+			}
+		}
+
+		return index;
+	}
+
+	public BatchKernel getBatchKernel() {
+
+		BatchKernel index = batchKernel;
+
+		if (index == null) {
+			synchronized (this) {
+				if (batchKernel == null) {
+					batchKernel = BatchKernel.create(segments);
+				}
+				index = batchKernel;
+			}
+		}
+
+		return index;
+	}
+
+	public VisibilitySweep getVisibilitySweep() {
+
+		VisibilitySweep index = visibilitySweep;
+
+		if (index == null) {
+			synchronized (this) {
+				if (visibilitySweep == null) {
+					visibilitySweep = new VisibilitySweep(segments, getGrid());
+				}
+				index = visibilitySweep;
+			}
+		}
+
+		return index;
+	}
+
 	public void generate() {
 
+		Tracer.get().beginLevelGeneration();
+
 		sceneLines = new ArrayList<>();
 
-		addRandomLines(Settings.get().getLineCount());
-		addRooms(Settings.get().getRoomIterations());
+		addRandomLines(settings.getLineCount());
+		addRooms(settings.getRoomIterations());
 		addOuterWalls();
 
+		// collinear walls, e. g. room walls on the outer walls, become a single line
+		rawLineCount = sceneLines.size();
+
+		if (settings.isMergeLines()) {
+			sceneLines = SegmentMerger.merge(sceneLines, WELD_EPSILON);
+		}
+
+		// the engines work on the segment buffer, the lines are kept for rendering
+		segments = new SegmentBuffer(sceneLines);
+
+		// the spatial indices of the previous lines
+		synchronized (this) {
+			grid = null;
+			bvh = null;
+			batchKernel = null;
+			visibilitySweep = null;
+		}
+
+		Tracer.get().endLevelGeneration(sceneLines.size(), rawLineCount, roomDimensions.size());
+
 	}
 
 	public void addRandomLines(int lineCount) {
@@ -76,9 +210,16 @@ public class Level {
 
 	private void addRooms(int roomIterations) {
 
-		// keep list of room dimensions to avoid overlapping rooms
+		// keep list of room dimensions for rendering
 		roomDimensions = new ArrayList<>();
 
+		// the rooms are snapped to the grid, so they can be represented by the grid points they cover.
+		// two rooms overlap or touch if and only if they share a grid point
+		int latticeCols = (int) (this.maxX / cellSize) + 2;
+		int latticeRows = (int) (this.maxY / cellSize) + 2;
+
+		BitSet occupied = new BitSet(latticeCols * latticeRows);
+
 		// iterations in order to create a room; once a random room overlaps
 		// another, it gets skipped and another random room is generated
 		for (int i = 0; i < roomIterations; i++) {
@@ -91,10 +232,15 @@ public class Level {
 			double maxY = minY + h;
 
 			// snap to grid
-			minX = ((int) (minX / cellSize)) * cellSize;
-			minY = ((int) (minY / cellSize)) * cellSize;
-			maxX = ((int) (maxX / cellSize)) * cellSize;
-			maxY = ((int) (maxY / cellSize)) * cellSize;
+			int minCol = (int) (minX / cellSize);
+			int minRow = (int) (minY / cellSize);
+			int maxCol = (int) (maxX / cellSize);
+			int maxRow = (int) (maxY / cellSize);
+
+			minX = minCol * cellSize;
+			minY = minRow * cellSize;
+			maxX = maxCol * cellSize;
+			maxY = maxRow * cellSize;
 
 			// avoid rooms that are dots or lines
 			if( minX == maxX || minY == maxY)
@@ -108,20 +254,14 @@ public class Level {
 			if( maxX > this.maxX || maxY > this.maxY)
 				continue;
 
-			Bounds roomBounds = new BoundingBox(minX, minY, maxX - minX, maxY - minY);
-
 			// skip room if it overlaps another room
-			boolean overlaps = false;
-			for (Bounds bounds : roomDimensions) {
-				if (roomBounds.intersects(bounds)) {
-					overlaps = true;
-					break;
-				}
-			}
-
-			if (overlaps)
+			if (isOccupied(occupied, latticeCols, minCol, minRow, maxCol, maxRow))
 				continue;
 
+			occupy(occupied, latticeCols, minCol, minRow, maxCol, maxRow);
+
+			Bounds roomBounds = new BoundingBox(minX, minY, maxX - minX, maxY - minY);
+
 			roomDimensions.add(roomBounds);
 
 			List<Line> room = createRoom(minX, minY, maxX, maxY);
@@ -134,6 +274,40 @@ public class Level {
 
 	}
 
+	/**
+	 * Check if any grid point of the given range is covered by a room
+	 */
+	private boolean isOccupied(BitSet occupied, int latticeCols, int minCol, int minRow, int maxCol, int maxRow) {
+
+		for (int row = minRow; row <= maxRow; row++) {
+
+			int rowStart = row * latticeCols;
+
+			int next = occupied.nextSetBit(rowStart + minCol);
+
+			if (next != -1 && next <= rowStart + maxCol)
+				return true;
+
+		}
+
+		return false;
+	}
+
+	/**
+	 * Mark the grid points of the given range as covered by a room
+	 */
+	private void occupy(BitSet occupied, int latticeCols, int minCol, int minRow, int maxCol, int maxRow) {
+
+		for (int row = minRow; row <= maxRow; row++) {
+
+			int rowStart = row * latticeCols;
+
+			occupied.set(rowStart + minCol, rowStart + maxCol + 1);
+
+		}
+
+	}
+
 	public List<Line> createRoom(double minX, double minY, double maxX, double maxY) {
 
 		List<Line> walls = new ArrayList<>();
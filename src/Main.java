@@ -1,8 +1,10 @@
 package AgentsLineOfSight;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Random;
 
 import javafx.animation.AnimationTimer;
 import javafx.application.Application;
@@ -14,6 +16,7 @@ import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.control.ContextMenu;
 import javafx.scene.control.MenuItem;
+import javafx.scene.image.ImageView;
 import javafx.scene.input.MouseEvent;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.Pane;
@@ -21,19 +24,44 @@ import javafx.scene.paint.Color;
 import javafx.scene.paint.CycleMethod;
 import javafx.scene.paint.RadialGradient;
 import javafx.scene.paint.Stop;
+import javafx.scene.text.Font;
 import javafx.stage.Stage;
 
 /**
  * Brute Force Line of Sight Algorithm: Use ScanLines to detect the visible area from a given position.
  * Regarding the movement of the agents, please read The Nature of Code: http://natureofcode.com/
+ *
+ * The application renders the state of the simulation, the simulation itself doesn't depend on the user interface.
  */
 public class Main extends Application {
 
-	Random rnd = new Random();
-
+	/**
+	 * Static layer: grid
+	 */
 	Canvas backgroundCanvas;
 	GraphicsContext backgroundGraphicsContext;
 
+	/**
+	 * Dynamic layer below the environment: highlighted grid cell and statistics
+	 */
+	Canvas statusCanvas;
+	GraphicsContext statusGraphicsContext;
+
+	/**
+	 * Static layer: room floors and scene lines
+	 */
+	Canvas environmentCanvas;
+	GraphicsContext environmentGraphicsContext;
+
+	/**
+	 * Dynamic layer: visible areas of the software rasterizer
+	 */
+	ImageView shapeImageView;
+	PolygonRasterizer rasterizer;
+
+	/**
+	 * Dynamic layer: scan lines and visible areas
+	 */
 	Canvas foregroundCanvas;
 	GraphicsContext foregroundGraphicsContext;
 
@@ -46,19 +74,50 @@ public class Main extends Application {
 
 	Scene scene;
 
-	List<Line> sceneLines;
-
 	/**
 	 * Current mouse location
 	 */
 	MouseStatus mouseStatus = new MouseStatus();
 
-	Level levelGenerator;
+	Simulation simulation;
 
-	Algorithm algorithm = new Algorithm();
+	/**
+	 * Runs the simulation on its own thread, if enabled in the settings
+	 */
+	SimulationLoop simulationLoop;
 
-	List<Mover> players;
-	List<Mover> enemies;
+	/**
+	 * State of the simulation which is rendered in the current frame
+	 */
+	SimulationSnapshot snapshot;
+
+	/**
+	 * Interpolation factor between the previous and the current tick of the snapshot
+	 */
+	double alpha = 1;
+
+	/**
+	 * Level which is painted on the environment layer
+	 */
+	Level paintedLevel;
+
+	/**
+	 * Durations of the render phases of a frame, only used by the JavaFX thread. The simulation has its own profiler.
+	 */
+	FrameProfiler profiler = new FrameProfiler();
+
+	private static final Font TIMINGS_FONT = Font.font("Monospaced", 11);
+
+	/**
+	 * Views of the players and enemies, in the order of the agents of the snapshots
+	 */
+	List<SpriteView> spriteViews = new ArrayList<>();
+
+	/**
+	 * The static layers are only repainted when they are invalid
+	 */
+	boolean backgroundValid = false;
+	boolean environmentValid = false;
 
 	@Override
 	public void start(Stage primaryStage) {
@@ -69,14 +128,24 @@ public class Main extends Application {
 		backgroundCanvas = new Canvas(Settings.get().getCanvasWidth(), Settings.get().getCanvasHeight());
 		backgroundGraphicsContext = backgroundCanvas.getGraphicsContext2D();
 
+		statusCanvas = new Canvas(Settings.get().getCanvasWidth(), Settings.get().getCanvasHeight());
+		statusGraphicsContext = statusCanvas.getGraphicsContext2D();
+
+		environmentCanvas = new Canvas(Settings.get().getCanvasWidth(), Settings.get().getCanvasHeight());
+		environmentGraphicsContext = environmentCanvas.getGraphicsContext2D();
+
+		shapeImageView = new ImageView();
+
 		foregroundCanvas = new Canvas(Settings.get().getCanvasWidth(), Settings.get().getCanvasHeight());
 		foregroundGraphicsContext = foregroundCanvas.getGraphicsContext2D();
 
 		// layers
 		layerPane = new Pane();
-		layerPane.getChildren().addAll(backgroundCanvas, foregroundCanvas);
+		layerPane.getChildren().addAll(backgroundCanvas, statusCanvas, environmentCanvas, shapeImageView, foregroundCanvas);
 
 		backgroundCanvas.widthProperty().bind(layerPane.widthProperty());
+		statusCanvas.widthProperty().bind(layerPane.widthProperty());
+		environmentCanvas.widthProperty().bind(layerPane.widthProperty());
 		foregroundCanvas.widthProperty().bind(layerPane.widthProperty());
 
 		root.setCenter(layerPane);
@@ -95,9 +164,7 @@ public class Main extends Application {
 		primaryStage.show();
 
 		// add content
-		createObjects();
-		createPlayers();
-		createEnemies();
+		createSimulation();
 
 		// listeners for settings
 		addSettingsListeners();
@@ -106,171 +173,226 @@ public class Main extends Application {
 		addInputListeners();
 
 		// add context menus
-		addCanvasContextMenu(backgroundCanvas);
+		addCanvasContextMenu(foregroundCanvas);
 
 		// run animation loop
 		startAnimation();
 
 	}
 
-	private void createObjects() {
+	private void createSimulation() {
 
-		levelGenerator = new Level();
+		simulation = new Simulation();
+		simulationLoop = new SimulationLoop(simulation);
 
-		sceneLines = levelGenerator.getLines();
+		for (Mover mover : simulation.getPlayers()) {
+			spriteViews.add(new SpriteView(layerPane, mover));
+		}
+
+		for (Mover mover : simulation.getEnemies()) {
+			spriteViews.add(new SpriteView(layerPane, mover));
+		}
 
 	}
 
-	private void createPlayers() {
+	private void startAnimation() {
 
-		players = new ArrayList<>();
+		// start game
+		animationLoop = new AnimationTimer() {
 
-		if (!Settings.hasPlayer)
-			return;
+			FpsCounter fpsCounter = new FpsCounter();
 
-		players.add(createPlayer());
+			@Override
+			public void handle(long now) {
 
-	}
+				long frameStart = System.nanoTime();
 
-	private void createEnemies() {
+				// update fps
+				// ----------------------------
+				fpsCounter.update(now);
 
-		enemies = new ArrayList<>();
-		for (int i = 0; i < Settings.ENEMY_COUNT; i++) {
+				// simulation: either the latest tick of the simulation thread or a tick per frame
+				// ----------------------------
+				simulation.setPlayerTarget(mouseStatus.x, mouseStatus.y);
 
-			Mover mover = createAgent();
-			enemies.add(mover);
+				if (simulationLoop.isRunning()) {
 
-		}
+					snapshot = simulationLoop.getSnapshot();
 
-	}
+					// no tick yet
+					if (snapshot == null)
+						return;
 
-	private Mover createPlayer() {
+					alpha = snapshot.getAlpha(System.nanoTime());
 
-		double x = mouseStatus.x;
-		double y = mouseStatus.y;
+				} else {
 
-		Mover agent = new Mover(layerPane);
-		agent.setLocation(x, y);
+					simulation.step();
 
-		// player is bound to the mouse location => limitation doesn't make
-		// sense
-		agent.setMaxSpeed(1000);
+					snapshot = simulation.createSnapshot(0);
+					alpha = 1;
 
-		return agent;
+				}
 
-	}
+				// update ui
+				// ----------------------------
+				long time = System.nanoTime();
 
-	private Mover createAgent() {
+				List<AgentSnapshot> agents = snapshot.getAgents();
 
-		double x = levelGenerator.minX + rnd.nextDouble() * levelGenerator.width;
-		double y = levelGenerator.minY + rnd.nextDouble() * levelGenerator.height;
+				for (int i = 0; i < agents.size(); i++) {
 
-		Mover agent = new Mover(layerPane);
-		agent.setLocation(x, y);
+					AgentSnapshot agent = agents.get(i);
 
-		return agent;
-	}
+					spriteViews.get(i).updateUI(agent.getX() + agent.getOffsetX(alpha), agent.getY() + agent.getOffsetY(alpha));
 
-	private void startAnimation() {
+				}
 
-		// start game
-		animationLoop = new AnimationTimer() {
+				time = profiler.record(Phase.UI_UPDATE, time);
 
-			FpsCounter fpsCounter = new FpsCounter();
+				// paint static layers, only if something changed
+				// ----------------------------
+				Tracer tracer = Tracer.get();
 
-			@Override
-			public void handle(long now) {
+				if (!backgroundValid) {
+					tracer.beginRenderPass();
+					paintBackground();
+					tracer.endRenderPass("Background");
+					backgroundValid = true;
+				}
 
-				// update fps
-				// ----------------------------
-				fpsCounter.update(now);
+				if (!environmentValid || snapshot.getLevel() != paintedLevel) {
+					tracer.beginRenderPass();
+					paintEnvironment(snapshot.getLevel());
+					tracer.endRenderPass("Environment");
+					environmentValid = true;
+					paintedLevel = snapshot.getLevel();
+				}
 
-				// ai: create scanlines & points
+				// paint status canvas
 				// ----------------------------
-				applyAlgorithm(players);
-				applyAlgorithm(enemies);
+				tracer.beginRenderPass();
 
-				// player ai
-				// ----------------------------
-				for (Mover player : players) {
-					PVector newLocation = new PVector(mouseStatus.x, mouseStatus.y);
-					PVector distance = PVector.sub(newLocation, player.getLocation());
-					PVector forceWithResetVelocity = PVector.sub(distance, player.getVelocity());
-					player.applyForce(forceWithResetVelocity);
-				}
+				statusGraphicsContext.clearRect(0, 0, statusCanvas.getWidth(), statusCanvas.getHeight());
 
-				// enemy ai
+				paintHighlightedGridCell();
+
+				// update overlays (statistics)
 				// ----------------------------
-				for (Mover mover : enemies) {
 
-					// move towards average intersection
-					PVector avg = mover.getAverageIntersection();
-					PVector seek = mover.seek(avg);
-					mover.applyForce(seek);
+				// show fps and other debug info
+				statusGraphicsContext.setFill(Color.BLACK);
+				statusGraphicsContext.fillText("Fps: " + fpsCounter.getFrameRate(), 1, 10);
 
-					// separate from walls
-					PVector separateFromWalls = mover.separate(avg);
-					mover.applyForce(separateFromWalls);
+				Level level = snapshot.getLevel();
+				statusGraphicsContext.fillText("Lines: " + level.getLines().size() + " (" + level.getRawLineCount() + " before merging)", 1, 24);
 
-					// separate from other movers
-					PVector separateFromMovers = mover.separate(enemies);
-					mover.applyForce(separateFromMovers);
+				if (Settings.get().isCache()) {
+					statusGraphicsContext.fillText(String.format("Cache hit rate: %.1f%%", snapshot.getCacheHitRate() * 100), 1, 38);
+				}
 
+				if (Settings.get().isAdaptiveScanLines()) {
+					statusGraphicsContext.fillText("Scan lines per frame: " + snapshot.getScanLineTotal(), 1, 52);
 				}
 
-				// move
-				// ----------------------------
-				players.forEach(Mover::move);
-				enemies.forEach(Mover::move);
+				if (Settings.get().isCullLines()) {
+					statusGraphicsContext.fillText(String.format("Culled lines: %.1f%%", snapshot.getCulledShare() * 100), 1, 66);
+				}
 
-				// update ui
-				// ----------------------------
-				players.forEach(Mover::updateUI);
-				enemies.forEach(Mover::updateUI);
+				VisibilityMatrix visibility = snapshot.getVisibility();
 
-				// paint background canvas
-				// ----------------------------
-				// clear canvas. we don't use clearRect because we want a black
-				// background
-				backgroundGraphicsContext.setFill(Settings.get().getBackgroundColor());
-				backgroundGraphicsContext.fillRect(0, 0, backgroundCanvas.getWidth(), backgroundCanvas.getHeight());
+				if (visibility != null) {
+					statusGraphicsContext.fillText(String.format("Visible pairs: %d (%d rays)", visibility.getVisibleCount(), visibility.getRayCount()), 1, 80);
+				}
 
-				// background
-				paintGrid(Settings.get().getGridColor());
+				paintTimings();
+
+				tracer.endRenderPass("Status");
+
+				time = profiler.record(Phase.BACKGROUND_PAINT, time);
 
 				// paint foreground canvas
 				// ----------------------------
 				// draw depending on mouse button down
+				tracer.beginRenderPass();
 				paintOnCanvas();
+				tracer.endRenderPass("Foreground");
 
-				// update overlays (statistics)
-				// ----------------------------
+				profiler.record(Phase.FOREGROUND_PAINT, time);
 
-				// show fps and other debug info
-				backgroundGraphicsContext.setFill(Color.BLACK);
-				backgroundGraphicsContext.fillText("Fps: " + fpsCounter.getFrameRate(), 1, 10);
+				long frameEnd = profiler.record(Phase.FRAME, frameStart);
+
+				// the simulation thread measures its own ticks
+				if (!simulationLoop.isRunning()) {
+					simulation.getScanLineBudget().recordFrame(frameEnd - frameStart, simulation.getAgentCount(), simulation.getSettings());
+				}
 
 			}
 		};
 
 		animationLoop.start();
 
+		if (Settings.get().isSimulationThread()) {
+			simulationLoop.start();
+		}
+
 	}
 
-	private void applyAlgorithm(List<Mover> movers) {
+	/**
+	 * Percentiles of the phase durations, the ones of the simulation come with the snapshot
+	 */
+	private void paintTimings() {
+
+		if (!Settings.get().isShowTimings())
+			return;
 
-		for (Mover mover : movers) {
+		GraphicsContext gc = statusGraphicsContext;
 
-			// get scanlines
-			List<Line> scanLines = algorithm.createScanLines(mover);
-			mover.setScanLines(scanLines);
+		gc.setFont(TIMINGS_FONT);
+		gc.setFill(Color.BLACK);
 
-			// get intersection points
-			List<PVector> points = algorithm.getIntersectionPoints(scanLines, sceneLines);
-			mover.setIntersectionPoints(points);
+		List<String> lines = new ArrayList<>();
+		lines.add(FrameProfiler.getSummaryHeader());
+		lines.addAll(snapshot.getTimings());
+		lines.addAll(profiler.getPhaseSummary());
 
+		double y = 102;
+		for (String line : lines) {
+			gc.fillText(line, 1, y);
+			y += 13;
 		}
 
+		gc.setFont(Font.getDefault());
+
+	}
+
+	/**
+	 * Write the phase durations to a CSV file in the working directory. The simulation's profiler may only be read
+	 * on the simulation thread, so the phases of the renderer are copied and the file is written there.
+	 */
+	private void dumpTimings() {
+
+		Path path = Paths.get("timings-" + System.currentTimeMillis() + ".csv");
+
+		FrameProfiler timings = new FrameProfiler();
+		timings.merge(profiler);
+
+		simulationLoop.execute(() -> {
+
+			timings.merge(simulation.getProfiler());
+
+			try {
+
+				timings.writeCsv(path);
+
+				System.out.println("Timings written to " + path.toAbsolutePath());
+
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+
+		});
+
 	}
 
 	private void clearCanvas() {
@@ -280,7 +402,7 @@ public class Main extends Application {
 
 	}
 
-	private void paintScanLines(List<Mover> movers) {
+	private void paintScanLines(List<AgentSnapshot> agents) {
 
 		if (!Settings.get().isDrawScanLines())
 			return;
@@ -290,31 +412,40 @@ public class Main extends Application {
 		gc.setStroke(Color.BLUE.deriveColor(1, 1, 1, 0.3));
 		gc.setFill(Color.BLUE);
 
-		for (Mover mover : movers) {
-			for (Line line : mover.getScanLines()) {
-				drawLine(line);
+		for (AgentSnapshot agent : agents) {
+
+			double offsetX = agent.getOffsetX(alpha);
+			double offsetY = agent.getOffsetY(alpha);
+
+			for (Line line : agent.getScanLines()) {
+				drawLine(line, offsetX, offsetY);
 			}
 		}
 
 	}
 
-	private void paintScanShape(List<Mover> movers) {
+	private void paintScanShape(List<AgentSnapshot> agents) {
 
 		if (!Settings.get().isDrawShape())
 			return;
 
 		GraphicsContext gc = foregroundGraphicsContext;
 
-		for (Mover mover : movers) {
+		for (AgentSnapshot agent : agents) {
+
+			// the shape moves along with the interpolated location
+			double offsetX = agent.getOffsetX(alpha);
+			double offsetY = agent.getOffsetY(alpha);
 
 			List<PVector> shapePoints = new ArrayList<>();
-			shapePoints.addAll(mover.getIntersectionPoints());
+			shapePoints.addAll(agent.getIntersectionPoints());
 
 			// if we don't have a full circle, we must start and close the shape
 			// at the user's position
-			if (mover.getSweepAngleRad() != Math.PI * 2) {
-				shapePoints.add(0, mover.getLocation());
-				shapePoints.add(mover.getLocation());
+			if (agent.getSweepAngle() != Math.PI * 2) {
+				PVector location = new PVector(agent.getX(), agent.getY());
+				shapePoints.add(0, location);
+				shapePoints.add(location);
 			}
 
 			gc.setStroke(Color.GREEN);
@@ -341,9 +472,9 @@ public class Main extends Application {
 			gc.beginPath();
 			for (PVector point : shapePoints) {
 				if (count == 0) {
-					gc.moveTo(point.x, point.y);
+					gc.moveTo(point.x + offsetX, point.y + offsetY);
 				} else {
-					gc.lineTo(point.x, point.y);
+					gc.lineTo(point.x + offsetX, point.y + offsetY);
 				}
 				count++;
 			}
@@ -361,38 +492,97 @@ public class Main extends Application {
 
 	}
 
-	private void paintIntersectionPoints(List<Mover> movers) {
+	/**
+	 * Fill the visible areas of all movers into a single image. Only the flat fill is supported,
+	 * there's no gradient and no border.
+	 */
+	private void rasterizeScanShapes() {
+
+		if (!Settings.get().isDrawShape())
+			return;
+
+		int width = (int) foregroundCanvas.getWidth();
+		int height = (int) foregroundCanvas.getHeight();
+
+		// new image for a new canvas size
+		if (rasterizer == null || rasterizer.getWidth() != width || rasterizer.getHeight() != height) {
+			rasterizer = new PolygonRasterizer(width, height);
+			shapeImageView.setImage(rasterizer.getImage());
+		}
+
+		rasterizer.rasterize(snapshot.getAgents(), alpha, Color.GREEN.deriveColor(1, 1, 1, 0.2));
+
+	}
+
+	private void paintIntersectionPoints(List<AgentSnapshot> agents) {
 
 		if (!Settings.get().isDrawPoints())
 			return;
 
 		GraphicsContext gc = foregroundGraphicsContext;
 
-		for (Mover mover : movers) {
+		for (AgentSnapshot agent : agents) {
 
 			gc.setStroke(Color.RED);
 			gc.setFill(Color.RED.deriveColor(1, 1, 1, 0.5));
 
+			double x = agent.getOffsetX(alpha);
+			double y = agent.getOffsetY(alpha);
+
 			double w = 2;
 			double h = w;
-			for (PVector point : mover.getIntersectionPoints()) {
-				gc.strokeOval(point.x - w / 2, point.y - h / 2, w, h);
-				gc.fillOval(point.x - w / 2, point.y - h / 2, w, h);
+			for (PVector point : agent.getIntersectionPoints()) {
+				gc.strokeOval(x + point.x - w / 2, y + point.y - h / 2, w, h);
+				gc.fillOval(x + point.x - w / 2, y + point.y - h / 2, w, h);
 			}
 
 		}
 	}
 
-	private void paintEnvironment() {
+	/**
+	 * Lines from every agent to the agents it sees
+	 */
+	private void paintSightLines(List<AgentSnapshot> agents) {
 
-		if (!Settings.get().isEnvironmentVisible())
+		VisibilityMatrix visibility = snapshot.getVisibility();
+
+		if (visibility == null)
 			return;
 
 		GraphicsContext gc = foregroundGraphicsContext;
 
+		gc.setStroke(Color.ORANGE.deriveColor(1, 1, 1, 0.6));
+
+		for (int a = 0; a < agents.size(); a++) {
+
+			AgentSnapshot viewer = agents.get(a);
+
+			for (int b = 0; b < agents.size(); b++) {
+
+				if (!visibility.canSee(a, b))
+					continue;
+
+				AgentSnapshot other = agents.get(b);
+
+				gc.strokeLine(viewer.getX() + viewer.getOffsetX(alpha), viewer.getY() + viewer.getOffsetY(alpha), other.getX() + other.getOffsetX(alpha), other.getY() + other.getOffsetY(alpha));
+
+			}
+		}
+
+	}
+
+	private void paintEnvironment(Level level) {
+
+		GraphicsContext gc = environmentGraphicsContext;
+
+		gc.clearRect(0, 0, environmentCanvas.getWidth(), environmentCanvas.getHeight());
+
+		if (!Settings.get().isEnvironmentVisible())
+			return;
+
 		// room floor
 		gc.setFill(Color.LIGHTGREY.deriveColor(1, 1, 1, 0.3));
-		for (Bounds bounds : levelGenerator.getRoomDimensions()) {
+		for (Bounds bounds : level.getRoomDimensions()) {
 			gc.fillRect(bounds.getMinX(), bounds.getMinY(), bounds.getWidth(), bounds.getHeight());
 		}
 
@@ -400,8 +590,8 @@ public class Main extends Application {
 		gc.setStroke(Color.BLACK);
 		gc.setFill(Color.BLACK);
 
-		for (Line line : sceneLines) {
-			drawLine(line);
+		for (Line line : level.getLines()) {
+			drawLine(gc, line);
 		}
 
 	}
@@ -411,27 +601,32 @@ public class Main extends Application {
 		// clear canvas
 		clearCanvas();
 
-		paintEnvironment();
+		List<AgentSnapshot> agents = snapshot.getAgents();
 
-		paintScanLines(players);
-		paintScanLines(enemies);
+		paintScanLines(agents);
 
 		// draw intersection shape
-		paintScanShape(players);
-		paintScanShape(enemies);
+		if (Settings.get().isSoftwareRasterizer()) {
+			rasterizeScanShapes();
+		} else {
+			paintScanShape(agents);
+		}
+
+		shapeImageView.setVisible(Settings.get().isDrawShape() && Settings.get().isSoftwareRasterizer());
 
 		// draw intersection points
-		paintIntersectionPoints(players);
-		paintIntersectionPoints(enemies);
+		paintIntersectionPoints(agents);
 
-	}
+		paintSightLines(agents);
 
-	private void drawLine(Line line) {
+	}
 
-		GraphicsContext gc = foregroundGraphicsContext;
+	private void drawLine(Line line, double offsetX, double offsetY) {
+		foregroundGraphicsContext.strokeLine(line.getStart().x + offsetX, line.getStart().y + offsetY, line.getEnd().x + offsetX, line.getEnd().y + offsetY);
+	}
 
+	private void drawLine(GraphicsContext gc, Line line) {
 		gc.strokeLine(line.getStart().x, line.getStart().y, line.getEnd().x, line.getEnd().y);
-
 	}
 
 	/**
@@ -451,6 +646,18 @@ public class Main extends Application {
 
 	}
 
+	private void paintBackground() {
+
+		// clear canvas. we don't use clearRect because we want a black
+		// background
+		backgroundGraphicsContext.setFill(Settings.get().getBackgroundColor());
+		backgroundGraphicsContext.fillRect(0, 0, backgroundCanvas.getWidth(), backgroundCanvas.getHeight());
+
+		// background
+		paintGrid(Settings.get().getGridColor());
+
+	}
+
 	private void paintGrid(Color color) {
 
 		double width = backgroundCanvas.getWidth();
@@ -458,7 +665,6 @@ public class Main extends Application {
 
 		double horizontalCellCount = Settings.get().getHorizontalCellCount();
 		double cellSize = width / horizontalCellCount;
-		double verticalCellCount = height / cellSize;
 
 		backgroundGraphicsContext.setStroke(color);
 		backgroundGraphicsContext.setLineWidth(1);
@@ -479,18 +685,39 @@ public class Main extends Application {
 
 		}
 
-		// highlight cell in which the mouse cursor resides
-		if (Settings.get().isHighlightGridCell()) {
+	}
+
+	/**
+	 * Highlight the cell in which the mouse cursor resides
+	 */
+	private void paintHighlightedGridCell() {
 
-			Color highlightColor = Color.LIGHTBLUE;
+		if (!Settings.get().isHighlightGridCell())
+			return;
 
-			int col = (int) (horizontalCellCount / width * mouseStatus.getX());
-			int row = (int) (verticalCellCount / height * mouseStatus.getY());
+		double width = statusCanvas.getWidth();
+		double height = statusCanvas.getHeight();
 
-			backgroundGraphicsContext.setFill(highlightColor);
-			backgroundGraphicsContext.fillRect(col * cellSize, row * cellSize, cellSize, cellSize);
+		double horizontalCellCount = Settings.get().getHorizontalCellCount();
+		double cellSize = width / horizontalCellCount;
+		double verticalCellCount = height / cellSize;
 
-		}
+		Color highlightColor = Color.LIGHTBLUE;
+
+		int col = (int) (horizontalCellCount / width * mouseStatus.getX());
+		int row = (int) (verticalCellCount / height * mouseStatus.getY());
+
+		statusGraphicsContext.setFill(highlightColor);
+		statusGraphicsContext.fillRect(col * cellSize, row * cellSize, cellSize, cellSize);
+
+	}
+
+	/**
+	 * New level of the simulation. The environment layer is repainted when the level arrives in a snapshot.
+	 */
+	private void createLevel() {
+
+		simulationLoop.execute(simulation::createLevel);
 
 	}
 
@@ -500,10 +727,36 @@ public class Main extends Application {
 	private void addSettingsListeners() {
 
 		// particle size
-		Settings.get().horizontalCellCountProperty().addListener((ChangeListener<Number>) (observable, oldValue, newValue) -> System.out.println("Horizontal cell count: " + newValue));
+		Settings.get().horizontalCellCountProperty().addListener((ChangeListener<Number>) (observable, oldValue, newValue) -> {
+			System.out.println("Horizontal cell count: " + newValue);
+			backgroundValid = false;
+		});
+
+		// the static layers must be repainted when the canvas size changes
+		backgroundCanvas.widthProperty().addListener((ChangeListener<Number>) (observable, oldValue, newValue) -> backgroundValid = false);
+		environmentCanvas.widthProperty().addListener((ChangeListener<Number>) (observable, oldValue, newValue) -> environmentValid = false);
+
+		Settings.get().lineCountProperty().addListener((ChangeListener<Number>) (observable, oldValue, newValue) -> createLevel());
+		Settings.get().roomIterationsProperty().addListener((ChangeListener<Number>) (observable, oldValue, newValue) -> createLevel());
+		Settings.get().mergeLinesProperty().addListener((observable, oldValue, newValue) -> createLevel());
+		Settings.get().environmentVisibleProperty().addListener((observable, oldValue, newValue) -> environmentValid = false);
+
+		// new statistics for new tolerances
+		Settings.get().cachePositionToleranceProperty().addListener((ChangeListener<Number>) (observable, oldValue, newValue) -> simulationLoop.execute(simulation::resetCacheStatistics));
+		Settings.get().cacheAngleToleranceProperty().addListener((ChangeListener<Number>) (observable, oldValue, newValue) -> simulationLoop.execute(simulation::resetCacheStatistics));
+		Settings.get().cullLinesProperty().addListener((observable, oldValue, newValue) -> simulationLoop.execute(simulation.getAlgorithm()::resetCullingStatistics));
+
+		// new pool with the selected number of threads
+		Settings.get().threadCountProperty().addListener((ChangeListener<Number>) (observable, oldValue, newValue) -> simulationLoop.execute(() -> simulation.setThreadCount(newValue.intValue())));
 
-		Settings.get().lineCountProperty().addListener((ChangeListener<Number>) (observable, oldValue, newValue) -> createObjects());
-		Settings.get().roomIterationsProperty().addListener((ChangeListener<Number>) (observable, oldValue, newValue) -> createObjects());
+		// move the simulation to its own thread or back to the animation loop
+		Settings.get().simulationThreadProperty().addListener((observable, oldValue, newValue) -> {
+			if (newValue) {
+				simulationLoop.start();
+			} else {
+				simulationLoop.stop();
+			}
+		});
 	}
 
 	/**
@@ -518,9 +771,16 @@ public class Main extends Application {
 		// create context menu
 		ContextMenu contextMenu = new ContextMenu();
 
-		// add custom menu item
-		menuItem = new MenuItem("Menu Item");
-		menuItem.setOnAction(e -> System.out.println("Clicked"));
+		// add custom menu items
+		menuItem = new MenuItem("Dump Timings");
+		menuItem.setOnAction(e -> dumpTimings());
+		contextMenu.getItems().add(menuItem);
+
+		menuItem = new MenuItem("Reset Timings");
+		menuItem.setOnAction(e -> {
+			profiler.reset();
+			simulationLoop.execute(simulation.getProfiler()::reset);
+		});
 		contextMenu.getItems().add(menuItem);
 
 		// context menu listener
@@ -531,6 +791,15 @@ public class Main extends Application {
 		});
 	}
 
+	@Override
+	public void stop() {
+
+		if (simulationLoop != null) {
+			simulationLoop.stop();
+		}
+
+	}
+
 	public static void main(String[] args) {
 		launch(args);
 	}
@@ -3,9 +3,12 @@ package AgentsLineOfSight;
 import java.util.ArrayList;
 import java.util.List;
 
-import javafx.scene.layout.Pane;
+public class Mover extends SpriteBase {
 
-public class Mover extends SpriteView {
+	/**
+	 * Index of the mover in the simulation, e. g. for the trace events
+	 */
+	int id;
 
 	private double sweepAngleRad = Math.toRadians(90); 
 	private double viewAngle = 0;
@@ -13,11 +16,14 @@ public class Mover extends SpriteView {
 	
 	List<Line> scanLines = new ArrayList<>();
 	List<PVector> intersectionPoints = new ArrayList<>();
-	
-	public Mover(Pane layer) {
-		super(layer);
-	}
 
+	VisibilityCache visibilityCache = new VisibilityCache();
+
+	/**
+	 * Only every stride-th scan line is cast, assigned by the scan line budget
+	 */
+	int scanLineStride = 1;
+	
 	public void move() {
 		
 		super.move();
@@ -55,6 +61,22 @@ public class Mover extends SpriteView {
 	
 	}
 	
+	public int getId() {
+		return id;
+	}
+
+	public void setId(int id) {
+		this.id = id;
+	}
+
+	public int getScanLineStride() {
+		return scanLineStride;
+	}
+
+	public void setScanLineStride(int scanLineStride) {
+		this.scanLineStride = scanLineStride;
+	}
+
 	public double getViewAngleRad() {
 		return viewAngle;
 	}
@@ -71,6 +93,9 @@ public class Mover extends SpriteView {
 		return scanLines;
 	}
 
+	/**
+	 * The list is shared with the snapshots of the renderer, it must not be modified afterwards
+	 */
 	public void setScanLines(List<Line> scanLines) {
 		this.scanLines = scanLines;
 	}
@@ -79,8 +104,15 @@ public class Mover extends SpriteView {
 		return intersectionPoints;
 	}
 
+	/**
+	 * The list is shared with the snapshots of the renderer, it must not be modified afterwards
+	 */
 	public void setIntersectionPoints(List<PVector> intersectionPoints) {
 		this.intersectionPoints = intersectionPoints;
 	}
+
+	public VisibilityCache getVisibilityCache() {
+		return visibilityCache;
+	}
 	
 }
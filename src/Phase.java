@@ -0,0 +1,69 @@
+package AgentsLineOfSight;
+
+/**
+ * Phases of a frame which are measured by the frame profiler
+ */
+public enum Phase {
+
+	/**
+	 * Scan lines and intersection points of the players
+	 */
+	ALGORITHM_PLAYERS("Algorithm Players"),
+
+	/**
+	 * Scan lines and intersection points of the enemies
+	 */
+	ALGORITHM_ENEMIES("Algorithm Enemies"),
+
+	/**
+	 * Which agent sees which other agent
+	 */
+	VISIBILITY_MATRIX("Visibility Matrix"),
+
+	/**
+	 * Steering forces of the players and enemies
+	 */
+	ENEMY_AI("Enemy AI"),
+
+	/**
+	 * Movement of the players and enemies
+	 */
+	MOVE("Move"),
+
+	/**
+	 * A whole tick of the simulation thread
+	 */
+	TICK("Tick"),
+
+	/**
+	 * Location of the sprite views
+	 */
+	UI_UPDATE("UI Update"),
+
+	/**
+	 * Static layers, highlighted grid cell and statistics
+	 */
+	BACKGROUND_PAINT("Background Paint"),
+
+	/**
+	 * Scan lines, visible areas and intersection points
+	 */
+	FOREGROUND_PAINT("Foreground Paint"),
+
+	/**
+	 * The whole frame
+	 */
+	FRAME("Frame");
+
+	private final String text;
+
+	private Phase(String text) {
+		this.text = text;
+	}
+
+	@Override
+	public String toString() {
+		return text;
+	}
+
+}
@@ -0,0 +1,363 @@
+package AgentsLineOfSight;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+
+/**
+ * Software rasterizer for the visible areas of the agents. Instead of one path per agent in the graphics context, all polygons
+ * are filled with a scanline polygon filler into an int array with premultiplied ARGB pixels, which is then copied into a
+ * single image per frame.
+ *
+ * The image is split into horizontal tiles which are rasterized in parallel. Every tile only writes its own rows, so the
+ * tiles don't need any synchronization.
+ */
+public class PolygonRasterizer {
+
+	/**
+	 * Number of pixel rows per tile
+	 */
+	private static final int TILE_HEIGHT = 32;
+
+	int width;
+	int height;
+
+	/**
+	 * Premultiplied ARGB pixels
+	 */
+	int[] pixels;
+	IntBuffer pixelBuffer;
+
+	WritableImage image;
+
+	// polygons: the points of polygon i are px[ polygonStart[i]] ... px[ polygonStart[i+1] - 1]
+	int polygonCount = 0;
+	int[] polygonStart = new int[1];
+	double[] polygonMinY = new double[0];
+	double[] polygonMaxY = new double[0];
+	double[] px = new double[0];
+	double[] py = new double[0];
+
+	/**
+	 * Row crossings of the edges of a polygon within a tile, one set of arrays per thread
+	 */
+	ThreadLocal<Crossings> crossings = ThreadLocal.withInitial(Crossings::new);
+
+	public PolygonRasterizer(int width, int height) {
+
+		this.width = width;
+		this.height = height;
+
+		pixels = new int[width * height];
+		pixelBuffer = IntBuffer.wrap(pixels);
+
+		image = new WritableImage(Math.max(1, width), Math.max(1, height));
+
+	}
+
+	/**
+	 * Fill the visible areas of the agents with the given color and copy the result into the image
+	 *
+	 * @param agents
+	 * @param alpha Interpolation factor between the previous and the current locations of the agents
+	 * @param color
+	 */
+	public void rasterize(List<AgentSnapshot> agents, double alpha, Color color) {
+
+		polygonCount = 0;
+		polygonStart[0] = 0;
+
+		addPolygons(agents, alpha);
+
+		int argb = premultiply(color);
+
+		int tileCount = (height + TILE_HEIGHT - 1) / TILE_HEIGHT;
+
+		IntStream.range(0, tileCount).parallel().forEach(tile -> rasterizeTile(tile * TILE_HEIGHT, Math.min(height, (tile + 1) * TILE_HEIGHT), argb));
+
+		image.getPixelWriter().setPixels(0, 0, width, height, PixelFormat.getIntArgbPreInstance(), pixelBuffer, width);
+
+	}
+
+	/**
+	 * Store the shapes of the agents in the polygon arrays. If an agent doesn't see a full circle, the shape
+	 * starts and ends at its location. The shapes are moved along with the interpolated locations.
+	 */
+	private void addPolygons(List<AgentSnapshot> agents, double alpha) {
+
+		for (AgentSnapshot agent : agents) {
+
+			List<PVector> points = agent.getIntersectionPoints();
+
+			double offsetX = agent.getOffsetX(alpha);
+			double offsetY = agent.getOffsetY(alpha);
+
+			boolean cone = agent.getSweepAngle() != Math.PI * 2;
+
+			int start = polygonStart[polygonCount];
+			int count = points.size() + (cone ? 1 : 0);
+
+			ensurePolygonCapacity(polygonCount + 1, start + count);
+
+			int index = start;
+
+			if (cone) {
+				px[index] = agent.getX() + offsetX;
+				py[index] = agent.getY() + offsetY;
+				index++;
+			}
+
+			for (PVector point : points) {
+				px[index] = point.x + offsetX;
+				py[index] = point.y + offsetY;
+				index++;
+			}
+
+			double minY = Double.POSITIVE_INFINITY;
+			double maxY = Double.NEGATIVE_INFINITY;
+
+			for (int i = start; i < index; i++) {
+				minY = Math.min(minY, py[i]);
+				maxY = Math.max(maxY, py[i]);
+			}
+
+			polygonMinY[polygonCount] = minY;
+			polygonMaxY[polygonCount] = maxY;
+
+			polygonCount++;
+			polygonStart[polygonCount] = index;
+
+		}
+
+	}
+
+	private void ensurePolygonCapacity(int polygons, int points) {
+
+		if (polygonStart.length < polygons + 1) {
+
+			int length = Math.max(polygons + 1, polygonStart.length * 2);
+
+			polygonStart = Arrays.copyOf(polygonStart, length);
+			polygonMinY = Arrays.copyOf(polygonMinY, length);
+			polygonMaxY = Arrays.copyOf(polygonMaxY, length);
+
+		}
+
+		if (px.length < points) {
+
+			int length = Math.max(points, px.length * 2);
+
+			px = Arrays.copyOf(px, length);
+			py = Arrays.copyOf(py, length);
+
+		}
+
+	}
+
+	/**
+	 * Clear the rows rowStart ... rowEnd - 1 and fill all polygons within them
+	 */
+	private void rasterizeTile(int rowStart, int rowEnd, int argb) {
+
+		Arrays.fill(pixels, rowStart * width, rowEnd * width, 0);
+
+		Crossings tileCrossings = crossings.get();
+
+		for (int polygon = 0; polygon < polygonCount; polygon++) {
+
+			// polygon outside of the tile; the sample point of a row is its center
+			if (polygonMaxY[polygon] < rowStart + 0.5 || polygonMinY[polygon] >= rowEnd - 0.5)
+				continue;
+
+			fillPolygon(polygon, rowStart, rowEnd, argb, tileCrossings);
+
+		}
+
+	}
+
+	/**
+	 * Scanline fill with the even-odd rule. The crossings of the edges with the row centers are sorted into the rows
+	 * with a counting sort, then the spans between pairs of crossings are filled.
+	 */
+	private void fillPolygon(int polygon, int rowStart, int rowEnd, int argb, Crossings tileCrossings) {
+
+		int rows = rowEnd - rowStart;
+
+		int[] rowCrossingStart = tileCrossings.rowStart(rows);
+		int start = polygonStart[polygon];
+		int end = polygonStart[polygon + 1];
+
+		// count the crossings per row
+		for (int i = start; i < end; i++) {
+
+			int j = (i + 1 < end) ? i + 1 : start;
+
+			int first = firstRow(Math.min(py[i], py[j]), rowStart);
+			int last = lastRow(Math.max(py[i], py[j]), rowEnd);
+
+			for (int row = first; row <= last; row++) {
+				rowCrossingStart[row - rowStart + 1]++;
+			}
+
+		}
+
+		for (int row = 0; row < rows; row++) {
+			rowCrossingStart[row + 1] += rowCrossingStart[row];
+		}
+
+		double[] xs = tileCrossings.xs(rowCrossingStart[rows]);
+		int[] fill = tileCrossings.fill(rows);
+
+		// intersect the edges with the row centers
+		for (int i = start; i < end; i++) {
+
+			int j = (i + 1 < end) ? i + 1 : start;
+
+			double x0 = px[i];
+			double y0 = py[i];
+			double x1 = px[j];
+			double y1 = py[j];
+
+			int first = firstRow(Math.min(y0, y1), rowStart);
+			int last = lastRow(Math.max(y0, y1), rowEnd);
+
+			if (first > last)
+				continue;
+
+			double slope = (x1 - x0) / (y1 - y0);
+
+			for (int row = first; row <= last; row++) {
+
+				int r = row - rowStart;
+
+				xs[rowCrossingStart[r] + fill[r]] = x0 + (row + 0.5 - y0) * slope;
+				fill[r]++;
+
+			}
+
+		}
+
+		// fill the spans between pairs of crossings
+		for (int r = 0; r < rows; r++) {
+
+			int from = rowCrossingStart[r];
+			int to = rowCrossingStart[r + 1];
+
+			if (to - from < 2)
+				continue;
+
+			Arrays.sort(xs, from, to);
+
+			int offset = (rowStart + r) * width;
+
+			for (int k = from; k + 1 < to; k += 2) {
+
+				// pixels whose center is within the span
+				int colStart = Math.max(0, (int) Math.ceil(xs[k] - 0.5));
+				int colEnd = Math.min(width, (int) Math.ceil(xs[k + 1] - 0.5));
+
+				for (int col = colStart; col < colEnd; col++) {
+					pixels[offset + col] = blend(argb, pixels[offset + col]);
+				}
+
+			}
+
+		}
+
+	}
+
+	/**
+	 * First row whose center is at or below y. Edges are half open, so a vertex on a row center is only counted once.
+	 */
+	private static int firstRow(double y, int rowStart) {
+		return Math.max(rowStart, (int) Math.ceil(y - 0.5));
+	}
+
+	/**
+	 * Last row whose center is above y
+	 */
+	private static int lastRow(double y, int rowEnd) {
+		return Math.min(rowEnd - 1, (int) Math.ceil(y - 0.5) - 1);
+	}
+
+	/**
+	 * Source over destination, both premultiplied ARGB
+	 */
+	private static int blend(int src, int dst) {
+
+		int inverseAlpha = 255 - (src >>> 24);
+
+		int a = (src >>> 24) + ((dst >>> 24) * inverseAlpha + 127) / 255;
+		int r = ((src >>> 16) & 0xFF) + (((dst >>> 16) & 0xFF) * inverseAlpha + 127) / 255;
+		int g = ((src >>> 8) & 0xFF) + (((dst >>> 8) & 0xFF) * inverseAlpha + 127) / 255;
+		int b = (src & 0xFF) + ((dst & 0xFF) * inverseAlpha + 127) / 255;
+
+		return (a << 24) | (r << 16) | (g << 8) | b;
+	}
+
+	private static int premultiply(Color color) {
+
+		double alpha = color.getOpacity();
+
+		int a = (int) Math.round(alpha * 255);
+		int r = (int) Math.round(color.getRed() * alpha * 255);
+		int g = (int) Math.round(color.getGreen() * alpha * 255);
+		int b = (int) Math.round(color.getBlue() * alpha * 255);
+
+		return (a << 24) | (r << 16) | (g << 8) | b;
+	}
+
+	public WritableImage getImage() {
+		return image;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Scratch arrays for the crossings of a tile, they only grow
+	 */
+	private static class Crossings {
+
+		int[] rowStart = new int[TILE_HEIGHT + 1];
+		int[] fill = new int[TILE_HEIGHT];
+		double[] xs = new double[0];
+
+		/**
+		 * Cleared row start array for the given number of rows
+		 */
+		public int[] rowStart(int rows) {
+			Arrays.fill(rowStart, 0, rows + 1, 0);
+			return rowStart;
+		}
+
+		/**
+		 * Cleared fill counters for the given number of rows
+		 */
+		public int[] fill(int rows) {
+			Arrays.fill(fill, 0, rows, 0);
+			return fill;
+		}
+
+		public double[] xs(int count) {
+
+			if (xs.length < count) {
+				xs = new double[Math.max(count, xs.length * 2)];
+			}
+
+			return xs;
+		}
+
+	}
+
+}
@@ -0,0 +1,44 @@
+package AgentsLineOfSight;
+
+/**
+ * Intersection of scan lines with axis aligned boxes, e. g. the nodes of the bounding volume hierarchy or the boxes of the sprites
+ */
+public class RayBox {
+
+	/**
+	 * Slab test of the scan line start + t * (dx,dy) against a box
+	 *
+	 * @param invDx 1 / dx, precomputed once per scan line
+	 * @param invDy 1 / dy, precomputed once per scan line
+	 * @return The parameter t in [0,1] at which the scan line enters the box or Double.POSITIVE_INFINITY if it misses the box
+	 */
+	public static double entry(double minX, double minY, double maxX, double maxY, double x, double y, double dx, double dy, double invDx, double invDy) {
+
+		double tMin = 0;
+		double tMax = 1;
+
+		if (dx != 0) {
+			double t1 = (minX - x) * invDx;
+			double t2 = (maxX - x) * invDx;
+			tMin = Math.max(tMin, Math.min(t1, t2));
+			tMax = Math.min(tMax, Math.max(t1, t2));
+		} else if (x < minX || x > maxX) {
+			return Double.POSITIVE_INFINITY;
+		}
+
+		if (dy != 0) {
+			double t1 = (minY - y) * invDy;
+			double t2 = (maxY - y) * invDy;
+			tMin = Math.max(tMin, Math.min(t1, t2));
+			tMax = Math.min(tMax, Math.max(t1, t2));
+		} else if (y < minY || y > maxY) {
+			return Double.POSITIVE_INFINITY;
+		}
+
+		if (tMin > tMax)
+			return Double.POSITIVE_INFINITY;
+
+		return tMin;
+	}
+
+}
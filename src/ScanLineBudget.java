@@ -0,0 +1,198 @@
+package AgentsLineOfSight;
+
+import java.util.List;
+
+/**
+ * Adapts the number of scan lines per agent, so that the frames stay within the target frame time of the settings.
+ * The cost of a scan line and the cost of the rest of the frame are measured, what's left of the target frame time
+ * is converted into a total number of scan lines. The total is distributed among the agents by their distance to
+ * the focus, e. g. the player, idle agents get less.
+ *
+ * The count of an agent is expressed as a stride into the direction table of the full scan line count, so all agents
+ * share one table. The quality degrades gracefully instead of dropping frames.
+ *
+ * The cost is measured per ray which has actually been cast. The scan modes cast a different number of rays per scan
+ * line, e. g. the refined mode adds rays at the corners, so the rays per scan line are measured as well.
+ */
+public class ScanLineBudget {
+
+	/**
+	 * Smoothing factor of the moving averages, higher values adapt faster
+	 */
+	private static final double SMOOTHING = 0.2;
+
+	/**
+	 * Every agent casts at least this number of scan lines, unless the settings use fewer
+	 */
+	public static final int MIN_SCAN_LINES = 8;
+
+	/**
+	 * Distance from the focus at which an agent gets half the share of an agent at the focus
+	 */
+	public static final double FOCUS_DISTANCE = 200;
+
+	/**
+	 * Share of an idle agent relative to a moving one at the same distance
+	 */
+	public static final double IDLE_WEIGHT = 0.5;
+
+	// measurements of the current frame
+	long algorithmNanos = 0;
+	long scanLines = 0;
+	long rays = 0;
+
+	// moving averages
+	double nanosPerRay = Double.NaN;
+	double raysPerScanLine = Double.NaN;
+	double overheadNanos = Double.NaN;
+
+	/**
+	 * Total number of scan lines per frame, negative until the first frame has been measured
+	 */
+	int total = -1;
+
+	double[] weights = new double[0];
+
+	/**
+	 * Add the duration of a visibility calculation to the current frame
+	 *
+	 * @param nanos Duration
+	 * @param scanLines Number of scan lines of the agents' budgets which have been calculated
+	 * @param rays Number of rays which have actually been cast
+	 */
+	public void recordAlgorithm(long nanos, long scanLines, long rays) {
+		this.algorithmNanos += nanos;
+		this.scanLines += scanLines;
+		this.rays += rays;
+	}
+
+	/**
+	 * Finish the current frame and calculate the total for the next one
+	 *
+	 * @param frameNanos Busy time of the frame, including the visibility calculation
+	 * @param agentCount Number of agents
+	 * @param settings The target frame time and the full scan line count
+	 */
+	public void recordFrame(long frameNanos, int agentCount, SettingsSnapshot settings) {
+
+		// e. g. everything has been answered by the visibility cache
+		if (rays > 0) {
+			nanosPerRay = average(nanosPerRay, (double) algorithmNanos / rays);
+		}
+
+		if (scanLines > 0) {
+			raysPerScanLine = average(raysPerScanLine, (double) rays / scanLines);
+		}
+
+		overheadNanos = average(overheadNanos, Math.max(0, frameNanos - algorithmNanos));
+
+		algorithmNanos = 0;
+		scanLines = 0;
+		rays = 0;
+
+		if (Double.isNaN(nanosPerRay) || Double.isNaN(raysPerScanLine))
+			return;
+
+		double targetNanos = settings.getTargetFrameTime() * 1_000_000;
+		double available = Math.max(0, targetNanos - overheadNanos);
+
+		int maxCount = settings.getScanLineCount();
+		int minCount = Math.min(maxCount, MIN_SCAN_LINES);
+
+		double count = available / (nanosPerRay * raysPerScanLine);
+
+		total = (int) Math.max((long) minCount * agentCount, Math.min((long) maxCount * agentCount, count));
+
+	}
+
+	private static double average(double average, double value) {
+
+		if (Double.isNaN(average))
+			return value;
+
+		return average + SMOOTHING * (value - average);
+	}
+
+	/**
+	 * Assign the scan line strides of the given agents. Until the first frame has been measured, all agents get the full count.
+	 *
+	 * @param agents
+	 * @param focus Location around which the agents get more scan lines
+	 * @param settings The full scan line count
+	 */
+	public void distribute(List<Mover> agents, PVector focus, SettingsSnapshot settings) {
+
+		int size = agents.size();
+
+		if (weights.length < size) {
+			weights = new double[size];
+		}
+
+		int maxCount = settings.getScanLineCount();
+		int maxStride = Math.max(1, maxCount / Math.min(maxCount, MIN_SCAN_LINES));
+
+		double weightSum = 0;
+
+		for (int i = 0; i < size; i++) {
+
+			Mover agent = agents.get(i);
+
+			double distance = Math.hypot(agent.getLocation().x - focus.x, agent.getLocation().y - focus.y) / FOCUS_DISTANCE;
+
+			double weight = 1 / (1 + distance * distance);
+
+			if (agent.getVelocity().x == 0 && agent.getVelocity().y == 0) {
+				weight *= IDLE_WEIGHT;
+			}
+
+			weights[i] = weight;
+			weightSum += weight;
+
+		}
+
+		for (int i = 0; i < size; i++) {
+
+			int stride = 1;
+
+			if (total >= 0) {
+
+				double count = total * weights[i] / weightSum;
+
+				stride = count >= 1 ? (int) Math.ceil(maxCount / count) : maxStride;
+				stride = Math.max(1, Math.min(maxStride, stride));
+
+			}
+
+			agents.get(i).setScanLineStride(stride);
+
+		}
+
+	}
+
+	/**
+	 * Set all agents back to the full scan line count and forget the measurements
+	 */
+	public void reset(List<Mover> agents) {
+
+		for (Mover agent : agents) {
+			agent.setScanLineStride(1);
+		}
+
+		algorithmNanos = 0;
+		scanLines = 0;
+		rays = 0;
+		nanosPerRay = Double.NaN;
+		raysPerScanLine = Double.NaN;
+		overheadNanos = Double.NaN;
+		total = -1;
+
+	}
+
+	/**
+	 * Total number of scan lines per frame, negative if it hasn't been calculated yet
+	 */
+	public int getTotal() {
+		return total;
+	}
+
+}
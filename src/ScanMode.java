@@ -0,0 +1,25 @@
+package AgentsLineOfSight;
+
+/**
+ * The ways in which the scan lines of an agent are distributed over its view cone
+ */
+public enum ScanMode {
+
+	/**
+	 * The scan lines have equal angle steps
+	 */
+	UNIFORM,
+
+	/**
+	 * The uniform scan lines are a coarse fan, the intervals in which the hits don't lie on one wall are subdivided
+	 * down to the minimum angle, i. e. only at corners and edges
+	 */
+	REFINED,
+
+	/**
+	 * Three scan lines per scene line endpoint within the range and the cone: one at the endpoint and one on either side.
+	 * The polygon is exact at the walls, the uniform scan lines only sample the arc of the range.
+	 */
+	ENDPOINTS
+
+}
@@ -0,0 +1,119 @@
+package AgentsLineOfSight;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The scan lines of an agent, represented by their common origin and the index into a direction table.
+ * The direction of scan line i is the table direction rotated by the start angle of the sweep,
+ * so there are no trigonometric functions and no allocations per scan line.
+ */
+public class ScanRays {
+
+	DirectionTable directions;
+
+	// origin
+	double x;
+	double y;
+
+	// rotation by the start angle
+	double angleStart;
+	double cosStart;
+	double sinStart;
+
+	double length;
+
+	/**
+	 * Only every stride-th direction of the table is used, e. g. for agents with a reduced scan line budget
+	 */
+	int stride;
+
+	public ScanRays(DirectionTable directions, double x, double y, double angleStart, double length) {
+		this(directions, x, y, angleStart, length, 1);
+	}
+
+	public ScanRays(DirectionTable directions, double x, double y, double angleStart, double length, int stride) {
+
+		this.directions = directions;
+		this.x = x;
+		this.y = y;
+		this.angleStart = angleStart;
+		this.cosStart = Math.cos(angleStart);
+		this.sinStart = Math.sin(angleStart);
+		this.length = length;
+		this.stride = stride;
+
+	}
+
+	public int size() {
+		return (directions.count + stride - 1) / stride;
+	}
+
+	/**
+	 * Angle between two neighbouring scan lines
+	 */
+	public double getAngleStep() {
+		return directions.angleStep * stride;
+	}
+
+	/**
+	 * Angle of the view cone. The scan lines start at its start angle, the last one is an angle step before its end.
+	 */
+	public double getSweepAngle() {
+		return directions.sweepAngle;
+	}
+
+	/**
+	 * Check if the scan lines cover a full circle, i. e. the last scan line is followed by the first one
+	 */
+	public boolean isFullCircle() {
+		return directions.sweepAngle >= Math.PI * 2;
+	}
+
+	/**
+	 * Horizontal component of the scan line i, i. e. its end point minus the origin
+	 */
+	public double getDx(int i) {
+		return (cosStart * directions.cos[i * stride] - sinStart * directions.sin[i * stride]) * length;
+	}
+
+	/**
+	 * Vertical component of the scan line i, i. e. its end point minus the origin
+	 */
+	public double getDy(int i) {
+		return (sinStart * directions.cos[i * stride] + cosStart * directions.sin[i * stride]) * length;
+	}
+
+	/**
+	 * Materialize the scan lines, e. g. for painting them
+	 */
+	public List<Line> toLines() {
+
+		List<Line> lines = new ArrayList<>(size());
+
+		PVector origin = new PVector(x, y);
+
+		for (int i = 0; i < size(); i++) {
+			lines.add(new Line(origin, new PVector(x + getDx(i), y + getDy(i))));
+		}
+
+		return lines;
+	}
+
+	public double getAngleStart() {
+		return angleStart;
+	}
+
+	public double getLength() {
+		return length;
+	}
+
+	public double getX() {
+		return x;
+	}
+
+	public double getY() {
+		return y;
+	}
+
+}
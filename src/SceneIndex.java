@@ -0,0 +1,39 @@
+package AgentsLineOfSight;
+
+import java.util.BitSet;
+
+/**
+ * Acceleration structure over the scene lines which answers nearest hit queries for scan lines.
+ */
+public interface SceneIndex {
+
+	/**
+	 * Find the closest intersection of the scan line start + t * (dx,dy) with the scene lines.
+	 *
+	 * @param x Start x of the scan line
+	 * @param y Start y of the scan line
+	 * @param dx Scan line direction x, the length of the vector is the scan line length
+	 * @param dy Scan line direction y, the length of the vector is the scan line length
+	 * @return The parameter t in [0,1] of the closest intersection or Double.POSITIVE_INFINITY if there is none
+	 */
+	public default double nearestHit(double x, double y, double dx, double dy) {
+		return nearestHit(x, y, dx, dy, null);
+	}
+
+	/**
+	 * Find the closest intersection and count the scene lines which have been tested, e. g. for profiling
+	 *
+	 * @param tests If not null, the number of tested scene lines is added to tests[0]
+	 * @return The parameter t in [0,1] of the closest intersection or Double.POSITIVE_INFINITY if there is none
+	 */
+	public double nearestHit(double x, double y, double dx, double dy, long[] tests);
+
+	/**
+	 * View of this index which only finds the scene lines of the filter, e. g. the lines which an agent can see at all.
+	 * The view shares the data of the index, it is cheap enough to be created per agent and frame.
+	 *
+	 * @param lines The indices of the scene lines in the segment buffer which are kept
+	 */
+	public SceneIndex filter(BitSet lines);
+
+}
@@ -0,0 +1,185 @@
+package AgentsLineOfSight;
+
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Compact storage of the scene lines in primitive arrays (structure of arrays). The intersection tests only
+ * read consecutive doubles instead of following the Line and PVector references, the direction and the
+ * bounding box of every segment are precomputed. The engines work on this buffer, the list of lines is
+ * only used for rendering.
+ *
+ * Without an index the buffer is its own brute force scene index.
+ */
+public class SegmentBuffer implements SceneIndex {
+
+	int size;
+
+	// start and end points
+	double[] x1;
+	double[] y1;
+	double[] x2;
+	double[] y2;
+
+	// direction: end - start
+	double[] dx;
+	double[] dy;
+
+	// bounding boxes
+	double[] minX;
+	double[] minY;
+	double[] maxX;
+	double[] maxY;
+
+	// bounding box of all segments
+	double boundsMinX;
+	double boundsMinY;
+	double boundsMaxX;
+	double boundsMaxY;
+
+	public SegmentBuffer(List<Line> lines) {
+
+		size = lines.size();
+
+		x1 = new double[size];
+		y1 = new double[size];
+		x2 = new double[size];
+		y2 = new double[size];
+		dx = new double[size];
+		dy = new double[size];
+		minX = new double[size];
+		minY = new double[size];
+		maxX = new double[size];
+		maxY = new double[size];
+
+		boundsMinX = Double.MAX_VALUE;
+		boundsMinY = Double.MAX_VALUE;
+		boundsMaxX = -Double.MAX_VALUE;
+		boundsMaxY = -Double.MAX_VALUE;
+
+		for (int i = 0; i < size; i++) {
+
+			Line line = lines.get(i);
+
+			x1[i] = line.getStart().x;
+			y1[i] = line.getStart().y;
+			x2[i] = line.getEnd().x;
+			y2[i] = line.getEnd().y;
+
+			dx[i] = x2[i] - x1[i];
+			dy[i] = y2[i] - y1[i];
+
+			minX[i] = Math.min(x1[i], x2[i]);
+			minY[i] = Math.min(y1[i], y2[i]);
+			maxX[i] = Math.max(x1[i], x2[i]);
+			maxY[i] = Math.max(y1[i], y2[i]);
+
+			boundsMinX = Math.min(boundsMinX, minX[i]);
+			boundsMinY = Math.min(boundsMinY, minY[i]);
+			boundsMaxX = Math.max(boundsMaxX, maxX[i]);
+			boundsMaxY = Math.max(boundsMaxY, maxY[i]);
+
+		}
+
+		if (size == 0) {
+			boundsMinX = boundsMinY = boundsMaxX = boundsMaxY = 0;
+		}
+
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Find the intersection of the scan line start + t * (dx,dy) with the segment at the given index.
+	 *
+	 * @return The parameter t in [0,1] of the intersection or Double.POSITIVE_INFINITY if the lines don't intersect
+	 */
+	public double intersect(int i, double x, double y, double dx, double dy) {
+
+		double bx = this.dx[i];
+		double by = this.dy[i];
+
+		double denominator = dx * by - dy * bx;
+
+		if (denominator == 0)
+			return Double.POSITIVE_INFINITY;
+
+		double cx = x1[i] - x;
+		double cy = y1[i] - y;
+
+		double t = (cx * by - cy * bx) / denominator;
+		if (t < 0 || t > 1)
+			return Double.POSITIVE_INFINITY;
+
+		double u = (cx * dy - cy * dx) / denominator;
+		if (u < 0 || u > 1)
+			return Double.POSITIVE_INFINITY;
+
+		return t;
+	}
+
+	@Override
+	public double nearestHit(double x, double y, double dx, double dy, long[] tests) {
+
+		if (tests != null) {
+			tests[0] += size;
+		}
+
+		double nearest = Double.POSITIVE_INFINITY;
+
+		for (int i = 0; i < size; i++) {
+
+			double t = intersect(i, x, y, dx, dy);
+
+			if (t < nearest) {
+				nearest = t;
+			}
+
+		}
+
+		return nearest;
+	}
+
+	/**
+	 * Brute force over the lines of the filter only
+	 */
+	@Override
+	public SceneIndex filter(BitSet lines) {
+
+		int[] indices = lines.stream().toArray();
+
+		return new SceneIndex() {
+
+			@Override
+			public double nearestHit(double x, double y, double dx, double dy, long[] tests) {
+
+				if (tests != null) {
+					tests[0] += indices.length;
+				}
+
+				double nearest = Double.POSITIVE_INFINITY;
+
+				for (int i = 0; i < indices.length; i++) {
+
+					double t = intersect(indices[i], x, y, dx, dy);
+
+					if (t < nearest) {
+						nearest = t;
+					}
+
+				}
+
+				return nearest;
+			}
+
+			@Override
+			public SceneIndex filter(BitSet subset) {
+				return SegmentBuffer.this.filter(subset);
+			}
+
+		};
+	}
+
+}
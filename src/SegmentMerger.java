@@ -0,0 +1,263 @@
+package AgentsLineOfSight;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Simplifies the scene lines without changing the visible walls: endpoints within epsilon are welded,
+ * segments without length are removed and collinear segments which overlap or touch are merged into one.
+ * Every removed segment saves an intersection test per scan line in the engines.
+ */
+public class SegmentMerger {
+
+	/**
+	 * Lines whose directions differ by less than this angle are considered parallel
+	 */
+	private static final double ANGLE_EPSILON = 1E-9;
+
+	/**
+	 * Merge the given lines
+	 *
+	 * @param lines
+	 * @param epsilon Distance within which points are considered equal
+	 * @return The merged lines
+	 */
+	public static List<Line> merge(List<Line> lines, double epsilon) {
+
+		int size = lines.size();
+
+		// weld: endpoints 2i and 2i+1 belong to line i
+		double[] px = new double[size * 2];
+		double[] py = new double[size * 2];
+
+		for (int i = 0; i < size; i++) {
+			px[2 * i] = lines.get(i).getStart().x;
+			py[2 * i] = lines.get(i).getStart().y;
+			px[2 * i + 1] = lines.get(i).getEnd().x;
+			py[2 * i + 1] = lines.get(i).getEnd().y;
+		}
+
+		weld(px, py, epsilon);
+
+		// canonical direction and the position on the carrier line of the remaining lines
+		List<Segment> segments = new ArrayList<>();
+
+		for (int i = 0; i < size; i++) {
+
+			double x1 = px[2 * i];
+			double y1 = py[2 * i];
+			double x2 = px[2 * i + 1];
+			double y2 = py[2 * i + 1];
+
+			double length = Math.hypot(x2 - x1, y2 - y1);
+
+			if (length <= epsilon)
+				continue;
+
+			segments.add(new Segment(x1, y1, x2, y2, length, epsilon));
+
+		}
+
+		List<Line> merged = new ArrayList<>();
+
+		// parallel segments become neighbours. A run continues as long as the next angle is within the tolerance, so
+		// that values close to each other are never separated like by a rounded key.
+		segments.sort((a, b) -> Double.compare(a.angle, b.angle));
+
+		for (int start = 0; start < segments.size();) {
+
+			int end = start + 1;
+
+			while (end < segments.size() && segments.get(end).angle - segments.get(end - 1).angle <= ANGLE_EPSILON) {
+				end++;
+			}
+
+			// collinear segments of the parallel ones, the same way by the offset of the carrier line
+			List<Segment> parallel = segments.subList(start, end);
+			parallel.sort((a, b) -> Double.compare(a.offset, b.offset));
+
+			for (int from = 0; from < parallel.size();) {
+
+				int to = from + 1;
+
+				while (to < parallel.size() && parallel.get(to).offset - parallel.get(to - 1).offset <= epsilon) {
+					to++;
+				}
+
+				mergeCollinear(parallel.subList(from, to), epsilon, merged);
+
+				from = to;
+			}
+
+			start = end;
+		}
+
+		return merged;
+	}
+
+	/**
+	 * Merge the segments of a carrier line which overlap or touch
+	 *
+	 * @param segments Segments of the same carrier line
+	 * @param epsilon Distance within which points are considered equal
+	 * @param merged Receives the merged lines
+	 */
+	private static void mergeCollinear(List<Segment> segments, double epsilon, List<Line> merged) {
+
+		segments.sort((a, b) -> Double.compare(a.from, b.from));
+
+		Segment current = null;
+
+		for (Segment segment : segments) {
+
+			if (current != null && segment.from <= current.to + epsilon) {
+
+				current.extend(segment);
+
+			} else {
+
+				if (current != null) {
+					merged.add(current.toLine());
+				}
+
+				current = segment;
+			}
+
+		}
+
+		if (current != null) {
+			merged.add(current.toLine());
+		}
+
+	}
+
+	/**
+	 * Move all points within epsilon of each other to the same location. The points are sorted by x, so only the
+	 * points within an x window of epsilon need to be compared. Connected points are joined with union find.
+	 */
+	private static void weld(double[] px, double[] py, double epsilon) {
+
+		int count = px.length;
+
+		Integer[] order = new Integer[count];
+		for (int i = 0; i < count; i++) {
+			order[i] = i;
+		}
+
+		Arrays.sort(order, (a, b) -> Double.compare(px[a], px[b]));
+
+		int[] parent = new int[count];
+		for (int i = 0; i < count; i++) {
+			parent[i] = i;
+		}
+
+		for (int i = 0; i < count; i++) {
+
+			int a = order[i];
+
+			for (int j = i + 1; j < count && px[order[j]] - px[a] <= epsilon; j++) {
+
+				int b = order[j];
+
+				if (Math.abs(py[a] - py[b]) <= epsilon) {
+					parent[find(parent, b)] = find(parent, a);
+				}
+
+			}
+		}
+
+		for (int i = 0; i < count; i++) {
+
+			int root = find(parent, i);
+
+			px[i] = px[root];
+			py[i] = py[root];
+
+		}
+
+	}
+
+	private static int find(int[] parent, int i) {
+
+		while (parent[i] != i) {
+			parent[i] = parent[parent[i]];
+			i = parent[i];
+		}
+
+		return i;
+	}
+
+	/**
+	 * A line with a canonical direction (x positive, or y positive for vertical lines) and its interval on the carrier line
+	 */
+	private static class Segment {
+
+		// unit direction
+		double ux;
+		double uy;
+
+		// direction angle and signed distance of the carrier line from the origin
+		double angle;
+		double offset;
+
+		// interval on the carrier line and the points at its ends
+		double from;
+		double to;
+		double fromX;
+		double fromY;
+		double toX;
+		double toY;
+
+		public Segment(double x1, double y1, double x2, double y2, double length, double epsilon) {
+
+			ux = (x2 - x1) / length;
+			uy = (y2 - y1) / length;
+
+			// canonical direction, so that both directions of a wall map to the same carrier line
+			if (ux < -ANGLE_EPSILON || (Math.abs(ux) <= ANGLE_EPSILON && uy < 0)) {
+
+				ux = -ux;
+				uy = -uy;
+
+				double x = x1;
+				double y = y1;
+				x1 = x2;
+				y1 = y2;
+				x2 = x;
+				y2 = y;
+			}
+
+			angle = Math.atan2(uy, ux);
+			offset = ux * y1 - uy * x1;
+
+			from = ux * x1 + uy * y1;
+			to = ux * x2 + uy * y2;
+
+			fromX = x1;
+			fromY = y1;
+			toX = x2;
+			toY = y2;
+
+		}
+
+		/**
+		 * Extend the interval by a following segment of the same carrier line
+		 */
+		public void extend(Segment other) {
+
+			if (other.to > to) {
+				to = other.to;
+				toX = other.toX;
+				toY = other.toY;
+			}
+
+		}
+
+		public Line toLine() {
+			return new Line(new PVector(fromX, fromY), new PVector(toX, toY));
+		}
+
+	}
+
+}
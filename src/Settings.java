@@ -1,5 +1,6 @@
 package AgentsLineOfSight;
 
+import javafx.beans.Observable;
 import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.DoubleProperty;
 import javafx.beans.property.IntegerProperty;
@@ -12,6 +13,7 @@ import javafx.beans.property.SimpleObjectProperty;
 import javafx.geometry.Insets;
 import javafx.scene.Node;
 import javafx.scene.control.CheckBox;
+import javafx.scene.control.ChoiceBox;
 import javafx.scene.control.Label;
 import javafx.scene.control.Separator;
 import javafx.scene.control.Slider;
@@ -33,6 +35,7 @@ public class Settings {
 	public static double TURN_AROUND_THRESHOLD = 10; // when average distance is lower than this value, then the enemy rotates and turns around
 	public static double TURN_AROUND_ANGLE_STEP = Math.toRadians(10); // step size that is added to the angle when the enemy rotates
 	public static boolean hasPlayer = false;
+	public static double SEPARATION_RADIUS = 100; // enemies steer away from other enemies within this distance
 	
 	// ================================================================================================
 	// gridpane
@@ -65,16 +68,34 @@ public class Settings {
 	private BooleanProperty highlightGridCell = new SimpleBooleanProperty(false);
 	private IntegerProperty lineCount = new SimpleIntegerProperty( 0);
 	private IntegerProperty roomIterations = new SimpleIntegerProperty( 200);
+	private BooleanProperty mergeLines = new SimpleBooleanProperty( true);
 	private BooleanProperty environmentVisible = new SimpleBooleanProperty(true);
 	private BooleanProperty userVisible = new SimpleBooleanProperty(true);
 	private DoubleProperty scanLineLength = new SimpleDoubleProperty(100);
 	private BooleanProperty drawPoints = new SimpleBooleanProperty( true);
 	private BooleanProperty drawShape = new SimpleBooleanProperty( true);
 	private BooleanProperty gradientShapeFill = new SimpleBooleanProperty(false);
+	private BooleanProperty softwareRasterizer = new SimpleBooleanProperty(false);
 	private BooleanProperty shapeBorderVisible = new SimpleBooleanProperty(true);
 	private BooleanProperty drawScanLines = new SimpleBooleanProperty( false);
 	private BooleanProperty limitToScanLineLength = new SimpleBooleanProperty( true);
 	private IntegerProperty scanLineCount = new SimpleIntegerProperty( 50);
+	private ObjectProperty<ScanMode> scanMode = new SimpleObjectProperty<>( ScanMode.UNIFORM);
+	private DoubleProperty refinementAngle = new SimpleDoubleProperty( 0.1); // degrees
+	private BooleanProperty adaptiveScanLines = new SimpleBooleanProperty( false);
+	private DoubleProperty targetFrameTime = new SimpleDoubleProperty( 16); // milliseconds
+	private BooleanProperty visibilityMatrix = new SimpleBooleanProperty( false);
+	private BooleanProperty agentOcclusion = new SimpleBooleanProperty( false);
+	private ObjectProperty<Engine> engine = new SimpleObjectProperty<>( Engine.BRUTE_FORCE);
+	private BooleanProperty parallel = new SimpleBooleanProperty( false);
+	private IntegerProperty threadCount = new SimpleIntegerProperty( Runtime.getRuntime().availableProcessors());
+	private BooleanProperty cache = new SimpleBooleanProperty( false);
+	private BooleanProperty simulationThread = new SimpleBooleanProperty( true);
+	private IntegerProperty tickRate = new SimpleIntegerProperty( 60); // ticks per second
+	private BooleanProperty cullLines = new SimpleBooleanProperty( false);
+	private BooleanProperty showTimings = new SimpleBooleanProperty( false);
+	private DoubleProperty cachePositionTolerance = new SimpleDoubleProperty( 2); // pixels
+	private DoubleProperty cacheAngleTolerance = new SimpleDoubleProperty( 2); // degrees
 
 	
 	// ================================================================================================
@@ -84,8 +105,22 @@ public class Settings {
 	// instance handling
 	// ----------------------------------------
 	private static Settings settings = new Settings();
-	
+
+	/**
+	 * Copy of the settings for the simulation thread, replaced whenever one of them changes
+	 */
+	private volatile SettingsSnapshot snapshot;
+
 	private Settings() {
+
+		snapshot = new SettingsSnapshot(this);
+
+		Observable[] simulationSettings = { canvasWidth, canvasHeight, gridHorizontalCellCount, lineCount, roomIterations, mergeLines, scanLineCount, scanLineLength, limitToScanLineLength, drawScanLines, scanMode, refinementAngle, adaptiveScanLines, targetFrameTime, engine, agentOcclusion, cullLines, parallel, cache, cachePositionTolerance, cacheAngleTolerance, visibilityMatrix, showTimings, tickRate };
+
+		for (Observable property : simulationSettings) {
+			property.addListener(observable -> snapshot = new SettingsSnapshot(this));
+		}
+
 	}
 	
 	/**
@@ -94,6 +129,13 @@ public class Settings {
 	public static Settings get() {
 		return settings;
 	}
+
+	/**
+	 * The latest copy of the settings which the simulation reads. Unlike the properties it may be used on any thread.
+	 */
+	public SettingsSnapshot getSnapshot() {
+		return snapshot;
+	}
 	
 
 	
@@ -136,6 +178,7 @@ public class Settings {
 
 		addNumberSlider( "Lines", 0, lineCount, 0, 150);
 		addNumberSlider( "Room Iterations", 0, roomIterations, 0, 4000);
+		addCheckBox( "Merge Lines", mergeLines);
 		addCheckBox( "Environment Visible", environmentVisible);
 		addCheckBox( "User Visible", userVisible);
 
@@ -146,7 +189,11 @@ public class Settings {
 		addCheckBox( "Shape", drawShape);
 		addCheckBox( "Shape Border", shapeBorderVisible);
 		addCheckBox( "Gradient Fill", gradientShapeFill);
+		addCheckBox( "Rasterizer", softwareRasterizer);
 		addCheckBox( "Limit", limitToScanLineLength);
+		addChoiceBox( "Engine", engine, Engine.values());
+		addCheckBox( "Agents Occlude", agentOcclusion);
+		addCheckBox( "Who Sees Whom", visibilityMatrix);
 		
 		// group 2
 		// -------------------------------------
@@ -154,10 +201,28 @@ public class Settings {
 
 		addCheckBox( "Scanlines Visible", drawScanLines);
 		addNumberSlider( "Count", 0, scanLineCount, 1, 2000);
+		addChoiceBox( "Mode", scanMode, ScanMode.values());
+		addNumberSlider( "Min Angle", 2, refinementAngle, 0.01, 5);
+		addCheckBox( "Adaptive", adaptiveScanLines);
+		addNumberSlider( "Target ms", 1, targetFrameTime, 1, 50);
 		
 		double maxLength = Math.sqrt( getCanvasWidth() * getCanvasWidth() + getCanvasHeight() * getCanvasHeight());
 		addNumberSlider( "Length", 0, scanLineLength, 1, maxLength);
 
+		// Performance
+		// -------------------------------------
+		addSeparator( "Performance");
+
+		addCheckBox( "Parallel", parallel);
+		addNumberSlider( "Threads", 0, threadCount, 1, Runtime.getRuntime().availableProcessors());
+		addCheckBox( "Sim Thread", simulationThread);
+		addNumberSlider( "Tick Rate", 0, tickRate, 10, 240);
+		addCheckBox( "Cull Lines", cullLines);
+		addCheckBox( "Timings", showTimings);
+		addCheckBox( "Cache", cache);
+		addNumberSlider( "Cache Position", 1, cachePositionTolerance, 0, 10);
+		addNumberSlider( "Cache Angle", 1, cacheAngleTolerance, 0, 10);
+
 		return gp;
 	}
 
@@ -194,6 +259,11 @@ public class Settings {
 		gp.addRow(rowIndex++, new Label( text), checkBox);
 	}
 	
+	private <T> void addChoiceBox( String text, Property<T> observable, T[] values) {
+		ChoiceBox<T> choiceBox = createChoiceBox( observable, values);
+		gp.addRow(rowIndex++, new Label( text), choiceBox);
+	}
+
 	// ------------------------------------------------------------------------------------------------
 	// gui helper methods
 	// ------------------------------------------------------------------------------------------------
@@ -239,6 +309,16 @@ public class Settings {
 		
 	}
 	
+	private <T> ChoiceBox<T> createChoiceBox( Property<T> observable, T[] values) {
+
+		ChoiceBox<T> choiceBox = new ChoiceBox<>();
+		choiceBox.getItems().addAll( values);
+		choiceBox.valueProperty().bindBidirectional(observable);
+
+		return choiceBox;
+
+	}
+
 	// ================================================================================================
 	// auto-generated begin
 	// ================================================================================================
@@ -325,6 +405,10 @@ public class Settings {
 		return this.lineCount.get();
 	}
 
+	public final void setLineCount(final int lineCount) {
+		this.lineCountProperty().set(lineCount);
+	}
+
 
 	public final IntegerProperty horizontalCellCountProperty() {
 		return this.gridHorizontalCellCount;
@@ -342,9 +426,17 @@ public class Settings {
 		return drawScanLines.get();
 	}
 
+	public final void setDrawScanLines(final boolean drawScanLines) {
+		this.drawScanLines.set(drawScanLines);
+	}
+
 	public double getScanLineLength() {
 		return scanLineLength.get();
 	}
+
+	public void setScanLineLength(double scanLineLength) {
+		this.scanLineLength.set(scanLineLength);
+	}
 	public boolean isDrawShape() {
 		return drawShape.get();
 	}
@@ -355,11 +447,71 @@ public class Settings {
 	public boolean isLimitToScanLineLength() {
 		return limitToScanLineLength.get();
 	}
+
+	public void setLimitToScanLineLength(boolean limitToScanLineLength) {
+		this.limitToScanLineLength.set(limitToScanLineLength);
+	}
 	
 	public int getScanLineCount() {
 		return scanLineCount.get();
 	}
 
+	public final IntegerProperty scanLineCountProperty() {
+		return this.scanLineCount;
+	}
+
+	public final void setScanLineCount(final int scanLineCount) {
+		this.scanLineCountProperty().set(scanLineCount);
+	}
+
+	public final ObjectProperty<ScanMode> scanModeProperty() {
+		return this.scanMode;
+	}
+
+	public final ScanMode getScanMode() {
+		return this.scanModeProperty().get();
+	}
+
+	public final void setScanMode(final ScanMode scanMode) {
+		this.scanModeProperty().set(scanMode);
+	}
+
+	public final DoubleProperty refinementAngleProperty() {
+		return this.refinementAngle;
+	}
+
+	public final double getRefinementAngle() {
+		return this.refinementAngleProperty().get();
+	}
+
+	public final void setRefinementAngle(final double refinementAngle) {
+		this.refinementAngleProperty().set(refinementAngle);
+	}
+
+	public final BooleanProperty adaptiveScanLinesProperty() {
+		return this.adaptiveScanLines;
+	}
+
+	public final boolean isAdaptiveScanLines() {
+		return this.adaptiveScanLinesProperty().get();
+	}
+
+	public final void setAdaptiveScanLines(final boolean adaptiveScanLines) {
+		this.adaptiveScanLinesProperty().set(adaptiveScanLines);
+	}
+
+	public final DoubleProperty targetFrameTimeProperty() {
+		return this.targetFrameTime;
+	}
+
+	public final double getTargetFrameTime() {
+		return this.targetFrameTimeProperty().get();
+	}
+
+	public final void setTargetFrameTime(final double targetFrameTime) {
+		this.targetFrameTimeProperty().set(targetFrameTime);
+	}
+
 	public final BooleanProperty highlightGridCellProperty() {
 		return this.highlightGridCell;
 	}
@@ -396,6 +548,18 @@ public class Settings {
 		this.gradientShapeFillProperty().set(gradientShapeFill);
 	}
 
+	public final BooleanProperty softwareRasterizerProperty() {
+		return this.softwareRasterizer;
+	}
+
+	public final boolean isSoftwareRasterizer() {
+		return this.softwareRasterizerProperty().get();
+	}
+
+	public final void setSoftwareRasterizer(final boolean softwareRasterizer) {
+		this.softwareRasterizerProperty().set(softwareRasterizer);
+	}
+
 	public final BooleanProperty shapeBorderVisibleProperty() {
 		return this.shapeBorderVisible;
 	}
@@ -432,6 +596,162 @@ public class Settings {
 		this.roomIterationsProperty().set(roomIterations);
 	}
 
+	public final BooleanProperty mergeLinesProperty() {
+		return this.mergeLines;
+	}
+
+	public final boolean isMergeLines() {
+		return this.mergeLinesProperty().get();
+	}
+
+	public final void setMergeLines(final boolean mergeLines) {
+		this.mergeLinesProperty().set(mergeLines);
+	}
+
+	public final ObjectProperty<Engine> engineProperty() {
+		return this.engine;
+	}
+
+	public final Engine getEngine() {
+		return this.engineProperty().get();
+	}
+
+	public final void setEngine(final Engine engine) {
+		this.engineProperty().set(engine);
+	}
+
+	public final BooleanProperty agentOcclusionProperty() {
+		return this.agentOcclusion;
+	}
+
+	public final boolean isAgentOcclusion() {
+		return this.agentOcclusionProperty().get();
+	}
+
+	public final void setAgentOcclusion(final boolean agentOcclusion) {
+		this.agentOcclusionProperty().set(agentOcclusion);
+	}
+
+	public final BooleanProperty parallelProperty() {
+		return this.parallel;
+	}
+
+	public final boolean isParallel() {
+		return this.parallelProperty().get();
+	}
+
+	public final void setParallel(final boolean parallel) {
+		this.parallelProperty().set(parallel);
+	}
+
+	public final IntegerProperty threadCountProperty() {
+		return this.threadCount;
+	}
+
+	public final int getThreadCount() {
+		return this.threadCountProperty().get();
+	}
+
+	public final void setThreadCount(final int threadCount) {
+		this.threadCountProperty().set(threadCount);
+	}
+
+	public final BooleanProperty showTimingsProperty() {
+		return this.showTimings;
+	}
+
+	public final boolean isShowTimings() {
+		return this.showTimingsProperty().get();
+	}
+
+	public final void setShowTimings(final boolean showTimings) {
+		this.showTimingsProperty().set(showTimings);
+	}
+
+	public final BooleanProperty simulationThreadProperty() {
+		return this.simulationThread;
+	}
+
+	public final boolean isSimulationThread() {
+		return this.simulationThreadProperty().get();
+	}
+
+	public final void setSimulationThread(final boolean simulationThread) {
+		this.simulationThreadProperty().set(simulationThread);
+	}
+
+	public final IntegerProperty tickRateProperty() {
+		return this.tickRate;
+	}
+
+	public final int getTickRate() {
+		return this.tickRateProperty().get();
+	}
+
+	public final void setTickRate(final int tickRate) {
+		this.tickRateProperty().set(tickRate);
+	}
+
+	public final BooleanProperty visibilityMatrixProperty() {
+		return this.visibilityMatrix;
+	}
+
+	public final boolean isVisibilityMatrix() {
+		return this.visibilityMatrixProperty().get();
+	}
+
+	public final void setVisibilityMatrix(final boolean visibilityMatrix) {
+		this.visibilityMatrixProperty().set(visibilityMatrix);
+	}
+
+	public final BooleanProperty cullLinesProperty() {
+		return this.cullLines;
+	}
+
+	public final boolean isCullLines() {
+		return this.cullLinesProperty().get();
+	}
+
+	public final void setCullLines(final boolean cullLines) {
+		this.cullLinesProperty().set(cullLines);
+	}
+
+	public final BooleanProperty cacheProperty() {
+		return this.cache;
+	}
+
+	public final boolean isCache() {
+		return this.cacheProperty().get();
+	}
+
+	public final void setCache(final boolean cache) {
+		this.cacheProperty().set(cache);
+	}
+
+	public final DoubleProperty cachePositionToleranceProperty() {
+		return this.cachePositionTolerance;
+	}
+
+	public final double getCachePositionTolerance() {
+		return this.cachePositionToleranceProperty().get();
+	}
+
+	public final void setCachePositionTolerance(final double cachePositionTolerance) {
+		this.cachePositionToleranceProperty().set(cachePositionTolerance);
+	}
+
+	public final DoubleProperty cacheAngleToleranceProperty() {
+		return this.cacheAngleTolerance;
+	}
+
+	public final double getCacheAngleTolerance() {
+		return this.cacheAngleToleranceProperty().get();
+	}
+
+	public final void setCacheAngleTolerance(final double cacheAngleTolerance) {
+		this.cacheAngleToleranceProperty().set(cacheAngleTolerance);
+	}
+
 	public Color getBackgroundColor() {
 		return backgroundColor;
 	}
@@ -0,0 +1,170 @@
+package AgentsLineOfSight;
+
+/**
+ * Immutable copy of the settings which the simulation reads. The settings properties belong to the user interface
+ * thread, the simulation takes the latest copy at the start of a tick and uses it for the whole tick, so all agents
+ * of a tick see the same settings.
+ */
+public class SettingsSnapshot {
+
+	// level
+	final double canvasWidth;
+	final double canvasHeight;
+	final int horizontalCellCount;
+	final int lineCount;
+	final int roomIterations;
+	final boolean mergeLines;
+
+	// scan lines
+	final int scanLineCount;
+	final double scanLineLength;
+	final boolean limitToScanLineLength;
+	final boolean drawScanLines;
+	final ScanMode scanMode;
+	final double refinementAngle;
+	final boolean adaptiveScanLines;
+	final double targetFrameTime;
+
+	// engine
+	final Engine engine;
+	final boolean agentOcclusion;
+	final boolean cullLines;
+	final boolean parallel;
+	final boolean cache;
+	final double cachePositionTolerance;
+	final double cacheAngleTolerance;
+
+	// simulation
+	final boolean visibilityMatrix;
+	final boolean showTimings;
+	final int tickRate;
+
+	public SettingsSnapshot(Settings settings) {
+
+		this.canvasWidth = settings.getCanvasWidth();
+		this.canvasHeight = settings.getCanvasHeight();
+		this.horizontalCellCount = settings.getHorizontalCellCount();
+		this.lineCount = settings.getLineCount();
+		this.roomIterations = settings.getRoomIterations();
+		this.mergeLines = settings.isMergeLines();
+
+		this.scanLineCount = settings.getScanLineCount();
+		this.scanLineLength = settings.getScanLineLength();
+		this.limitToScanLineLength = settings.isLimitToScanLineLength();
+		this.drawScanLines = settings.isDrawScanLines();
+		this.scanMode = settings.getScanMode();
+		this.refinementAngle = settings.getRefinementAngle();
+		this.adaptiveScanLines = settings.isAdaptiveScanLines();
+		this.targetFrameTime = settings.getTargetFrameTime();
+
+		this.engine = settings.getEngine();
+		this.agentOcclusion = settings.isAgentOcclusion();
+		this.cullLines = settings.isCullLines();
+		this.parallel = settings.isParallel();
+		this.cache = settings.isCache();
+		this.cachePositionTolerance = settings.getCachePositionTolerance();
+		this.cacheAngleTolerance = settings.getCacheAngleTolerance();
+
+		this.visibilityMatrix = settings.isVisibilityMatrix();
+		this.showTimings = settings.isShowTimings();
+		this.tickRate = settings.getTickRate();
+
+	}
+
+	public double getCanvasWidth() {
+		return canvasWidth;
+	}
+
+	public double getCanvasHeight() {
+		return canvasHeight;
+	}
+
+	public int getHorizontalCellCount() {
+		return horizontalCellCount;
+	}
+
+	public int getLineCount() {
+		return lineCount;
+	}
+
+	public int getRoomIterations() {
+		return roomIterations;
+	}
+
+	public boolean isMergeLines() {
+		return mergeLines;
+	}
+
+	public int getScanLineCount() {
+		return scanLineCount;
+	}
+
+	public double getScanLineLength() {
+		return scanLineLength;
+	}
+
+	public boolean isLimitToScanLineLength() {
+		return limitToScanLineLength;
+	}
+
+	public boolean isDrawScanLines() {
+		return drawScanLines;
+	}
+
+	public ScanMode getScanMode() {
+		return scanMode;
+	}
+
+	public double getRefinementAngle() {
+		return refinementAngle;
+	}
+
+	public boolean isAdaptiveScanLines() {
+		return adaptiveScanLines;
+	}
+
+	public double getTargetFrameTime() {
+		return targetFrameTime;
+	}
+
+	public Engine getEngine() {
+		return engine;
+	}
+
+	public boolean isAgentOcclusion() {
+		return agentOcclusion;
+	}
+
+	public boolean isCullLines() {
+		return cullLines;
+	}
+
+	public boolean isParallel() {
+		return parallel;
+	}
+
+	public boolean isCache() {
+		return cache;
+	}
+
+	public double getCachePositionTolerance() {
+		return cachePositionTolerance;
+	}
+
+	public double getCacheAngleTolerance() {
+		return cacheAngleTolerance;
+	}
+
+	public boolean isVisibilityMatrix() {
+		return visibilityMatrix;
+	}
+
+	public boolean isShowTimings() {
+		return showTimings;
+	}
+
+	public int getTickRate() {
+		return tickRate;
+	}
+
+}
@@ -0,0 +1,607 @@
+package AgentsLineOfSight;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The simulation without any user interface: level, movers, the line of sight algorithm, the enemy ai and the movement.
+ * The JavaFX application only renders its state, but it can also run headless, e. g. on a server or in a benchmark:
+ *
+ * <pre>
+ * java AgentsLineOfSight.Simulation [ticks]
+ * </pre>
+ */
+public class Simulation {
+
+	Random rnd = new Random();
+
+	Level level;
+
+	Algorithm algorithm = new Algorithm();
+
+	/**
+	 * Settings of the current tick, the latest ones are taken at its start
+	 */
+	SettingsSnapshot settings = Settings.get().getSnapshot();
+
+	/**
+	 * Worker pool for the parallel visibility calculation of the agents
+	 */
+	ForkJoinPool pool = new ForkJoinPool(Settings.get().getThreadCount());
+
+	List<Mover> players;
+	List<Mover> enemies;
+
+	/**
+	 * Players and enemies, i. e. the agents which block the view of the others
+	 */
+	List<Mover> agents = new ArrayList<>();
+
+	/**
+	 * Boxes of the agents, rebuilt every tick
+	 */
+	SpatialHash occluders = new SpatialHash(10);
+
+	/**
+	 * Neighbour grid of the enemies for the separation, rebuilt every tick
+	 */
+	SpatialHash neighbours = new SpatialHash(Settings.SEPARATION_RADIUS);
+
+	/**
+	 * Number of visibility calculations which were skipped respectively done because of the visibility cache
+	 */
+	LongAdder cacheHits = new LongAdder();
+	LongAdder cacheMisses = new LongAdder();
+
+	/**
+	 * Which agent sees which other agent, calculated every tick if enabled in the settings
+	 */
+	VisibilityMatrix visibility = new VisibilityMatrix();
+
+	/**
+	 * Scan line counts of the agents for the target frame time
+	 */
+	ScanLineBudget scanLineBudget = new ScanLineBudget();
+
+	/**
+	 * Number of scan lines of the agents' budgets which have been calculated in the current tick. The algorithm counts
+	 * the rays which have actually been cast.
+	 */
+	LongAdder scanLinesCast = new LongAdder();
+
+	/**
+	 * Duration histograms of the phases
+	 */
+	FrameProfiler profiler = new FrameProfiler();
+
+	/**
+	 * Location which the player follows, e. g. the mouse location. It is replaced instead of modified, because
+	 * the user interface sets it while the simulation thread reads it.
+	 */
+	volatile PVector playerTarget = new PVector(0, 0);
+
+	/**
+	 * Number of ticks so far
+	 */
+	long tick = 0;
+
+	/**
+	 * The last snapshot, its locations are the previous locations of the next one
+	 */
+	SimulationSnapshot snapshot;
+
+	public Simulation() {
+
+		createLevel();
+		createPlayers();
+		createEnemies();
+
+		agents.addAll(players);
+		agents.addAll(enemies);
+
+		for (int i = 0; i < agents.size(); i++) {
+			agents.get(i).setId(i);
+		}
+
+	}
+
+	public void createLevel() {
+
+		level = new Level();
+
+	}
+
+	private void createPlayers() {
+
+		players = new ArrayList<>();
+
+		if (!Settings.hasPlayer)
+			return;
+
+		players.add(createPlayer());
+
+	}
+
+	private void createEnemies() {
+
+		enemies = new ArrayList<>();
+		for (int i = 0; i < Settings.ENEMY_COUNT; i++) {
+
+			Mover mover = createAgent();
+			enemies.add(mover);
+
+		}
+
+	}
+
+	private Mover createPlayer() {
+
+		Mover agent = new Mover();
+		agent.setLocation(playerTarget.x, playerTarget.y);
+
+		// player is bound to the mouse location => limitation doesn't make
+		// sense
+		agent.setMaxSpeed(1000);
+
+		return agent;
+
+	}
+
+	private Mover createAgent() {
+
+		double x = level.minX + rnd.nextDouble() * level.width;
+		double y = level.minY + rnd.nextDouble() * level.height;
+
+		Mover agent = new Mover();
+		agent.setLocation(x, y);
+
+		return agent;
+	}
+
+	/**
+	 * Advance the simulation by one tick
+	 */
+	public void step() {
+
+		long time = System.nanoTime();
+
+		settings = Settings.get().getSnapshot();
+		algorithm.setSettings(settings);
+
+		// ai: create scanlines & points
+		// ----------------------------
+		if (settings.isAgentOcclusion()) {
+			occluders.rebuild(agents);
+		}
+
+		if (settings.isAdaptiveScanLines()) {
+			scanLineBudget.distribute(agents, getFocus(), settings);
+		} else {
+			scanLineBudget.reset(agents);
+		}
+
+		long algorithmStart = time;
+
+		applyAlgorithm(players);
+		time = profiler.record(Phase.ALGORITHM_PLAYERS, time);
+
+		applyAlgorithm(enemies);
+		time = profiler.record(Phase.ALGORITHM_ENEMIES, time);
+
+		scanLineBudget.recordAlgorithm(time - algorithmStart, scanLinesCast.sumThenReset(), algorithm.getRaysCast());
+		algorithm.resetRaysCast();
+
+		// who sees whom
+		// ----------------------------
+		if (settings.isVisibilityMatrix()) {
+
+			visibility.calculate(agents, algorithm.getSceneIndex(level), settings.getScanLineLength());
+
+			time = profiler.record(Phase.VISIBILITY_MATRIX, time);
+
+		}
+
+		// player ai
+		// ----------------------------
+		PVector target = playerTarget;
+
+		for (Mover player : players) {
+			PVector distance = PVector.sub(target, player.getLocation());
+			PVector forceWithResetVelocity = PVector.sub(distance, player.getVelocity());
+			player.applyForce(forceWithResetVelocity);
+		}
+
+		// enemy ai
+		// ----------------------------
+		Tracer tracer = Tracer.get();
+		tracer.beginSteering();
+
+		neighbours.rebuild(enemies);
+
+		for (Mover mover : enemies) {
+
+			// move towards average intersection
+			PVector avg = mover.getAverageIntersection();
+			PVector seek = mover.seek(avg);
+			mover.applyForce(seek);
+
+			// separate from walls
+			PVector separateFromWalls = mover.separate(avg);
+			mover.applyForce(separateFromWalls);
+
+			// separate from other movers
+			PVector separateFromMovers = mover.separate(neighbours);
+			mover.applyForce(separateFromMovers);
+
+		}
+
+		tracer.endSteering(enemies.size());
+
+		time = profiler.record(Phase.ENEMY_AI, time);
+
+		// move
+		// ----------------------------
+		players.forEach(Mover::move);
+		enemies.forEach(Mover::move);
+
+		profiler.record(Phase.MOVE, time);
+
+		tick++;
+
+	}
+
+	/**
+	 * Capture the state for the renderer, call it after step()
+	 *
+	 * @param tickInterval Duration of a tick in nanoseconds for the interpolation, 0 if the renderer shouldn't interpolate
+	 */
+	public SimulationSnapshot createSnapshot(long tickInterval) {
+
+		List<AgentSnapshot> agentSnapshots = new ArrayList<>(agents.size());
+
+		for (int i = 0; i < agents.size(); i++) {
+
+			AgentSnapshot previous = snapshot == null ? null : snapshot.getAgents().get(i);
+
+			agentSnapshots.add(new AgentSnapshot(agents.get(i), previous));
+
+		}
+
+		VisibilityMatrix visibilityCopy = settings.isVisibilityMatrix() ? visibility.copy() : null;
+
+		// the summary is only needed for the timings overlay, the percentiles are calculated over all buckets
+		List<String> timings = settings.isShowTimings() ? profiler.getPhaseSummary() : Collections.<String> emptyList();
+
+		snapshot = new SimulationSnapshot(tick, System.nanoTime(), tickInterval, level, Collections.unmodifiableList(agentSnapshots), visibilityCopy, timings, getCacheHitRate(), scanLineBudget.getTotal(), algorithm.getCulledShare());
+
+		return snapshot;
+	}
+
+	/**
+	 * Advance the simulation by the given number of ticks as fast as possible
+	 *
+	 * @param ticks
+	 * @return Ticks per second
+	 */
+	public double run(int ticks) {
+
+		long start = System.nanoTime();
+
+		for (int i = 0; i < ticks; i++) {
+
+			long tickStart = System.nanoTime();
+
+			step();
+
+			long tickEnd = profiler.record(Phase.FRAME, tickStart);
+
+			scanLineBudget.recordFrame(tickEnd - tickStart, agents.size(), settings);
+		}
+
+		long elapsedNanos = System.nanoTime() - start;
+
+		return ticks * 1_000_000_000.0 / elapsedNanos;
+	}
+
+	private void applyAlgorithm(List<Mover> movers) {
+
+		// the agents only read the scene => spread them across the pool and wait until all are done
+		if (settings.isParallel() && movers.size() > 1) {
+
+			pool.invoke(new AlgorithmTask(movers, 0, movers.size()));
+
+		} else {
+
+			for (Mover mover : movers) {
+				applyAlgorithm(mover);
+			}
+
+		}
+
+	}
+
+	private void applyAlgorithm(Mover mover) {
+
+		// the pose barely changed => keep the previous scan lines and intersection points
+		boolean cache = settings.isCache();
+
+		// the other agents move every tick => only the wall hits of the uniform scan lines are kept, the boxes are tested again.
+		// the sweep only considers the walls.
+		boolean occlusion = settings.isAgentOcclusion() && settings.getEngine() != Engine.SWEEP;
+		boolean recast = occlusion && settings.getScanMode() == ScanMode.UNIFORM;
+
+		VisibilityCache visibilityCache = mover.getVisibilityCache();
+
+		if (cache && occlusion && !recast) {
+
+			// the shadows of the previous result are stale and the scan lines depend on them
+			visibilityCache.invalidate();
+			cacheMisses.increment();
+
+			cache = false;
+
+		} else if (cache) {
+
+			if (visibilityCache.matches(mover, level, settings)) {
+
+				cacheHits.increment();
+
+				if (recast) {
+					recastOccluders(mover, visibilityCache);
+				}
+
+				return;
+			}
+
+			cacheMisses.increment();
+
+		} else {
+
+			// a result from before the cache was disabled must not be reused
+			mover.getVisibilityCache().invalidate();
+
+		}
+
+		Tracer tracer = Tracer.get();
+		tracer.beginVisibility();
+
+		// get scanlines
+		ScanRays scanRays = algorithm.createScanRays(mover);
+		scanLinesCast.add(scanRays.size());
+
+		// get intersection points
+		SpatialHash agentOccluders = occlusion ? occluders : null;
+
+		// the counters are only needed for the trace events
+		long[] statistics = tracer.isEnabled() ? new long[2] : null;
+
+		List<PVector> points;
+		double[] wallHits = null;
+
+		if (cache && recast) {
+			wallHits = algorithm.getWallHits(scanRays, algorithm.getSceneIndex(level, scanRays), statistics);
+			points = algorithm.getOccludedIntersectionPoints(scanRays, wallHits, agentOccluders, mover, statistics);
+		} else {
+			points = algorithm.getIntersectionPoints(mover, scanRays, level, agentOccluders, statistics);
+		}
+
+		mover.setIntersectionPoints(points);
+
+		// the line objects are only needed for painting; refined scan lines end at their points
+		if (!settings.isDrawScanLines()) {
+			mover.setScanLines(Collections.emptyList());
+		} else if (settings.getScanMode() == ScanMode.UNIFORM) {
+			mover.setScanLines(scanRays.toLines());
+		} else {
+			mover.setScanLines(algorithm.createScanLines(mover.getLocation(), points));
+		}
+
+		// the event is always ended, a recording may have started after the counters were skipped
+		if (statistics != null) {
+			tracer.endVisibility(mover.getId(), scanRays.size(), statistics[Algorithm.STATISTICS_TESTED_LINES], statistics[Algorithm.STATISTICS_HITS]);
+		} else {
+			tracer.endVisibility(mover.getId(), scanRays.size(), 0, 0);
+		}
+
+		if (cache) {
+			visibilityCache.update(mover, level, settings, scanRays, wallHits);
+		}
+
+	}
+
+	/**
+	 * Test the cached scan lines of the mover against the current agent boxes. The wall hits and the scan lines which
+	 * are drawn don't change.
+	 */
+	private void recastOccluders(Mover mover, VisibilityCache visibilityCache) {
+
+		Tracer tracer = Tracer.get();
+		tracer.beginVisibility();
+
+		ScanRays scanRays = visibilityCache.getScanRays();
+
+		long[] statistics = tracer.isEnabled() ? new long[2] : null;
+
+		mover.setIntersectionPoints(algorithm.getOccludedIntersectionPoints(scanRays, visibilityCache.getWallHits(), occluders, mover, statistics));
+
+		if (statistics != null) {
+			tracer.endVisibility(mover.getId(), scanRays.size(), statistics[Algorithm.STATISTICS_TESTED_LINES], statistics[Algorithm.STATISTICS_HITS]);
+		} else {
+			tracer.endVisibility(mover.getId(), scanRays.size(), 0, 0);
+		}
+
+	}
+
+	/**
+	 * Applies the algorithm to a range of movers, splits the range until there's a single mover per task
+	 */
+	private class AlgorithmTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		List<Mover> movers;
+		int from;
+		int to;
+
+		public AlgorithmTask(List<Mover> movers, int from, int to) {
+			this.movers = movers;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+
+			if (to - from == 1) {
+				applyAlgorithm(movers.get(from));
+				return;
+			}
+
+			int mid = (from + to) / 2;
+
+			invokeAll(new AlgorithmTask(movers, from, mid), new AlgorithmTask(movers, mid, to));
+
+		}
+
+	}
+
+	/**
+	 * New pool with the given number of threads
+	 */
+	public void setThreadCount(int threadCount) {
+
+		pool.shutdown();
+		pool = new ForkJoinPool(threadCount);
+
+	}
+
+	/**
+	 * Location around which the agents get more scan lines: the player or, without a player, the player target
+	 */
+	private PVector getFocus() {
+		return players.isEmpty() ? playerTarget : players.get(0).getLocation();
+	}
+
+	public void setPlayerTarget(double x, double y) {
+		playerTarget = new PVector(x, y);
+	}
+
+	/**
+	 * Share of the visibility calculations which were answered by the visibility cache since the last reset
+	 *
+	 * @return Hit rate in [0,1], 0 if the cache hasn't been used
+	 */
+	public double getCacheHitRate() {
+
+		long hits = cacheHits.sum();
+		long total = hits + cacheMisses.sum();
+
+		return total == 0 ? 0 : (double) hits / total;
+	}
+
+	public long getCacheHits() {
+		return cacheHits.sum();
+	}
+
+	public long getCacheMisses() {
+		return cacheMisses.sum();
+	}
+
+	public void resetCacheStatistics() {
+		cacheHits.reset();
+		cacheMisses.reset();
+	}
+
+	/**
+	 * Check if agent a saw agent b in the last tick, i. e. b was within the range and the view cone of a and
+	 * no wall was between them. Requires the visibility matrix of the settings, otherwise the result is false.
+	 */
+	public boolean canSee(Mover a, Mover b) {
+		return visibility.canSee(a.getId(), b.getId());
+	}
+
+	public VisibilityMatrix getVisibilityMatrix() {
+		return visibility;
+	}
+
+	public Algorithm getAlgorithm() {
+		return algorithm;
+	}
+
+	public SettingsSnapshot getSettings() {
+		return settings;
+	}
+
+	public ScanLineBudget getScanLineBudget() {
+		return scanLineBudget;
+	}
+
+	/**
+	 * Number of agents, i. e. players and enemies
+	 */
+	public int getAgentCount() {
+		return agents.size();
+	}
+
+	public FrameProfiler getProfiler() {
+		return profiler;
+	}
+
+	public Level getLevel() {
+		return level;
+	}
+
+	public List<Mover> getPlayers() {
+		return players;
+	}
+
+	public List<Mover> getEnemies() {
+		return enemies;
+	}
+
+	/**
+	 * Run the simulation without user interface and report the speed
+	 *
+	 * @param args Number of ticks, default 1000
+	 */
+	public static void main(String[] args) {
+
+		int ticks = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+
+		Simulation simulation = new Simulation();
+
+		double ticksPerSecond = simulation.run(ticks);
+
+		System.out.println(String.format("Lines: %d (%d before merging)", simulation.getLevel().getLines().size(), simulation.getLevel().getRawLineCount()));
+		System.out.println(String.format("Ticks: %d, ticks/sec: %.1f", ticks, ticksPerSecond));
+
+		simulation.getProfiler().getSummary().forEach(System.out::println);
+
+		if (Settings.get().isAdaptiveScanLines()) {
+			System.out.println(String.format("Scan lines per tick: %d", simulation.getScanLineBudget().getTotal()));
+		}
+
+		if (Settings.get().isVisibilityMatrix()) {
+			VisibilityMatrix visibility = simulation.getVisibilityMatrix();
+			System.out.println(String.format("Visible pairs: %d, candidate pairs: %d, rays: %d", visibility.getVisibleCount(), visibility.getCandidateCount(), visibility.getRayCount()));
+		}
+
+		if (Settings.get().isCullLines()) {
+			Algorithm algorithm = simulation.getAlgorithm();
+			System.out.println(String.format("Lines kept: %d, culled: %d (%.1f%%)", algorithm.getKeptLines(), algorithm.getCulledLines(), algorithm.getCulledShare() * 100));
+		}
+
+		if (Settings.get().isCache()) {
+			System.out.println(String.format("Cache hits: %d, misses: %d, hit rate: %.1f%%", simulation.getCacheHits(), simulation.getCacheMisses(), simulation.getCacheHitRate() * 100));
+		}
+
+		simulation.pool.shutdown();
+
+	}
+
+}
@@ -0,0 +1,163 @@
+package AgentsLineOfSight;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs the simulation on its own thread with the fixed tick rate of the settings, independent of the frame rate of
+ * the user interface. After every tick a snapshot is published with a lock free handoff: the renderer always gets
+ * the latest snapshot, older ones which it didn't pick up are dropped.
+ *
+ * The user interface must not modify the simulation directly while the loop runs, changes like a new level are
+ * passed as commands which the simulation thread executes between two ticks. The settings aren't read from their
+ * properties, the simulation takes a copy at the start of every tick (see {@link Settings#getSnapshot()}).
+ */
+public class SimulationLoop implements Runnable {
+
+	/**
+	 * A slower simulation catches up by running the missed ticks back to back, but at most this many.
+	 * Beyond that the ticks are dropped, otherwise the simulation would never catch up again.
+	 */
+	private static final int MAX_CATCH_UP_TICKS = 5;
+
+	Simulation simulation;
+
+	AtomicReference<SimulationSnapshot> snapshot = new AtomicReference<>();
+
+	Queue<Runnable> commands = new ConcurrentLinkedQueue<>();
+
+	Thread thread;
+
+	volatile boolean running = false;
+
+	public SimulationLoop(Simulation simulation) {
+		this.simulation = simulation;
+	}
+
+	/**
+	 * Start the simulation thread, if it isn't running yet
+	 */
+	public void start() {
+
+		if (running)
+			return;
+
+		running = true;
+
+		// a snapshot of an earlier run is outdated
+		snapshot.set(null);
+
+		thread = new Thread(this, "Simulation");
+		thread.setDaemon(true);
+		thread.start();
+
+	}
+
+	/**
+	 * Stop the simulation thread and wait until the current tick is finished
+	 */
+	public void stop() {
+
+		if (!running)
+			return;
+
+		running = false;
+
+		LockSupport.unpark(thread);
+
+		try {
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		thread = null;
+
+		// commands which came in after the last tick
+		runCommands();
+
+	}
+
+	/**
+	 * Execute the command on the simulation thread before the next tick. Without a running thread the command is executed immediately.
+	 */
+	public void execute(Runnable command) {
+
+		if (!running) {
+			command.run();
+			return;
+		}
+
+		commands.add(command);
+
+	}
+
+	@Override
+	public void run() {
+
+		long next = System.nanoTime();
+
+		while (running) {
+
+			long tickInterval = getTickInterval();
+
+			runCommands();
+
+			long tickStart = System.nanoTime();
+
+			simulation.step();
+
+			snapshot.set(simulation.createSnapshot(tickInterval));
+
+			long tickEnd = simulation.getProfiler().record(Phase.TICK, tickStart);
+
+			simulation.getScanLineBudget().recordFrame(tickEnd - tickStart, simulation.getAgentCount(), simulation.getSettings());
+
+			next += tickInterval;
+
+			// too far behind => drop the missed ticks
+			if (tickEnd - next > tickInterval * MAX_CATCH_UP_TICKS) {
+				next = tickEnd;
+			}
+
+			// wait for the next tick, parkNanos may return early
+			long wait;
+			while (running && (wait = next - System.nanoTime()) > 0) {
+				LockSupport.parkNanos(wait);
+			}
+
+		}
+
+	}
+
+	private void runCommands() {
+
+		Runnable command;
+
+		while ((command = commands.poll()) != null) {
+			command.run();
+		}
+
+	}
+
+	/**
+	 * Duration of a tick for the tick rate of the settings
+	 */
+	public long getTickInterval() {
+		return (long) (1_000_000_000.0 / Math.max(1, Settings.get().getSnapshot().getTickRate()));
+	}
+
+	/**
+	 * The latest snapshot or null if there hasn't been a tick yet
+	 */
+	public SimulationSnapshot getSnapshot() {
+		return snapshot.get();
+	}
+
+	public boolean isRunning() {
+		return running;
+	}
+
+}
@@ -0,0 +1,115 @@
+package AgentsLineOfSight;
+
+import java.util.List;
+
+/**
+ * Immutable state of the simulation at the end of a tick. The simulation thread publishes a new snapshot after every
+ * tick, the renderer only reads snapshots and never the movers, so it doesn't need any locks.
+ *
+ * The renderer runs one tick behind: between two ticks it interpolates from the previous to the current locations.
+ */
+public class SimulationSnapshot {
+
+	final long tick;
+
+	/**
+	 * Publication time in System.nanoTime()
+	 */
+	final long time;
+
+	/**
+	 * Duration of a tick in nanoseconds
+	 */
+	final long tickInterval;
+
+	final Level level;
+
+	/**
+	 * Players first, then the enemies
+	 */
+	final List<AgentSnapshot> agents;
+
+	/**
+	 * Which agent sees which, null if it isn't calculated
+	 */
+	final VisibilityMatrix visibility;
+
+	/**
+	 * Phase summary of the simulation's profiler, empty if the timings aren't shown
+	 */
+	final List<String> timings;
+
+	// statistics
+	final double cacheHitRate;
+	final int scanLineTotal;
+	final double culledShare;
+
+	public SimulationSnapshot(long tick, long time, long tickInterval, Level level, List<AgentSnapshot> agents, VisibilityMatrix visibility, List<String> timings, double cacheHitRate, int scanLineTotal, double culledShare) {
+
+		this.tick = tick;
+		this.time = time;
+		this.tickInterval = tickInterval;
+		this.level = level;
+		this.agents = agents;
+		this.visibility = visibility;
+		this.timings = timings;
+		this.cacheHitRate = cacheHitRate;
+		this.scanLineTotal = scanLineTotal;
+		this.culledShare = culledShare;
+
+	}
+
+	/**
+	 * Interpolation factor for the given time
+	 *
+	 * @param now Time in System.nanoTime()
+	 * @return Factor in [0,1], 0 is the previous tick, 1 the current one
+	 */
+	public double getAlpha(long now) {
+
+		if (tickInterval <= 0)
+			return 1;
+
+		return Math.max(0, Math.min(1, (double) (now - time) / tickInterval));
+	}
+
+	public long getTick() {
+		return tick;
+	}
+
+	public long getTime() {
+		return time;
+	}
+
+	public Level getLevel() {
+		return level;
+	}
+
+	public List<AgentSnapshot> getAgents() {
+		return agents;
+	}
+
+	public VisibilityMatrix getVisibility() {
+		return visibility;
+	}
+
+	public List<String> getTimings() {
+		return timings;
+	}
+
+	public double getCacheHitRate() {
+		return cacheHitRate;
+	}
+
+	/**
+	 * Scan lines of all agents for the next tick, see ScanLineBudget
+	 */
+	public int getScanLineTotal() {
+		return scanLineTotal;
+	}
+
+	public double getCulledShare() {
+		return culledShare;
+	}
+
+}
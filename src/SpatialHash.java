@@ -0,0 +1,253 @@
+package AgentsLineOfSight;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Uniform grid over the bounding boxes of the sprites, rebuilt every frame because the sprites move.
+ * Every box is registered in all cells it overlaps. The cells are filled with a counting sort into flat arrays,
+ * which only grow when the number of sprites or cells grows, so a rebuild doesn't allocate.
+ *
+ * The grid bounds are the bounds of the boxes, the cell size adapts so that there are about as many cells as boxes.
+ */
+public class SpatialHash extends CellGrid<SpriteBase> {
+
+	/**
+	 * Lower limit for the cell size
+	 */
+	double minCellSize;
+
+	int size = 0;
+
+	// boxes
+	SpriteBase[] sprites = new SpriteBase[0];
+	double[] boxMinX = new double[0];
+	double[] boxMinY = new double[0];
+	double[] boxMaxX = new double[0];
+	double[] boxMaxY = new double[0];
+
+	/**
+	 * The boxes of cell i are cellItems[ cellStart[i]] ... cellItems[ cellStart[i+1] - 1]
+	 */
+	int[] cellStart = new int[1];
+	int[] cellItems = new int[0];
+	int[] fill = new int[0];
+
+	/**
+	 * Result of the last neighbour query
+	 */
+	int[] queryResult = new int[0];
+
+	public SpatialHash(double minCellSize) {
+		this.minCellSize = minCellSize;
+	}
+
+	/**
+	 * Register the boxes of the given sprites
+	 */
+	public void rebuild(List<? extends SpriteBase> list) {
+
+		size = list.size();
+
+		ensureBoxCapacity(size);
+
+		minX = Double.POSITIVE_INFINITY;
+		minY = Double.POSITIVE_INFINITY;
+		maxX = Double.NEGATIVE_INFINITY;
+		maxY = Double.NEGATIVE_INFINITY;
+
+		for (int i = 0; i < size; i++) {
+
+			SpriteBase sprite = list.get(i);
+
+			double x = sprite.getLocation().x;
+			double y = sprite.getLocation().y;
+
+			sprites[i] = sprite;
+			boxMinX[i] = x - sprite.getWidth() / 2;
+			boxMinY[i] = y - sprite.getHeight() / 2;
+			boxMaxX[i] = x + sprite.getWidth() / 2;
+			boxMaxY[i] = y + sprite.getHeight() / 2;
+
+			minX = Math.min(minX, boxMinX[i]);
+			minY = Math.min(minY, boxMinY[i]);
+			maxX = Math.max(maxX, boxMaxX[i]);
+			maxY = Math.max(maxY, boxMaxY[i]);
+
+		}
+
+		if (size == 0) {
+			minX = minY = maxX = maxY = 0;
+		}
+
+		// about one cell per box
+		cellSize = Math.max(minCellSize, Math.sqrt((maxX - minX) * (maxY - minY) / Math.max(1, size)));
+
+		cols = (int) ((maxX - minX) / cellSize) + 1;
+		rows = (int) ((maxY - minY) / cellSize) + 1;
+
+		int cellCount = cols * rows;
+
+		if (cellStart.length < cellCount + 1) {
+			cellStart = new int[cellCount + 1];
+			fill = new int[cellCount];
+		}
+
+		Arrays.fill(cellStart, 0, cellCount + 1, 0);
+		Arrays.fill(fill, 0, cellCount, 0);
+
+		// count the boxes per cell
+		for (int i = 0; i < size; i++) {
+			for (int row = row(boxMinY[i]); row <= row(boxMaxY[i]); row++) {
+				for (int col = col(boxMinX[i]); col <= col(boxMaxX[i]); col++) {
+					cellStart[row * cols + col + 1]++;
+				}
+			}
+		}
+
+		for (int i = 0; i < cellCount; i++) {
+			cellStart[i + 1] += cellStart[i];
+		}
+
+		if (cellItems.length < cellStart[cellCount]) {
+			cellItems = new int[cellStart[cellCount] * 2];
+		}
+
+		// fill the cells
+		for (int i = 0; i < size; i++) {
+			for (int row = row(boxMinY[i]); row <= row(boxMaxY[i]); row++) {
+				for (int col = col(boxMinX[i]); col <= col(boxMaxX[i]); col++) {
+
+					int cell = row * cols + col;
+
+					cellItems[cellStart[cell] + fill[cell]] = i;
+					fill[cell]++;
+
+				}
+			}
+		}
+
+	}
+
+	private void ensureBoxCapacity(int capacity) {
+
+		if (sprites.length >= capacity)
+			return;
+
+		int length = Math.max(capacity, sprites.length * 2);
+
+		sprites = new SpriteBase[length];
+		boxMinX = new double[length];
+		boxMinY = new double[length];
+		boxMaxX = new double[length];
+		boxMaxY = new double[length];
+
+	}
+
+	/**
+	 * Find the sprites whose location is within the square of the given radius around x,y.
+	 * The result is kept in the hash until the next query, get the sprites with getQueryResult().
+	 * That avoids allocations, but queries must not run concurrently.
+	 *
+	 * @return Number of sprites found
+	 */
+	public int query(double x, double y, double radius) {
+
+		if (queryResult.length < size) {
+			queryResult = new int[sprites.length];
+		}
+
+		int count = 0;
+
+		int colStart = col(x - radius);
+		int colEnd = col(x + radius);
+		int rowStart = row(y - radius);
+		int rowEnd = row(y + radius);
+
+		for (int row = rowStart; row <= rowEnd; row++) {
+			for (int col = colStart; col <= colEnd; col++) {
+
+				int cell = row * cols + col;
+
+				for (int i = cellStart[cell]; i < cellStart[cell + 1]; i++) {
+
+					int box = cellItems[i];
+
+					double boxX = (boxMinX[box] + boxMaxX[box]) / 2;
+					double boxY = (boxMinY[box] + boxMaxY[box]) / 2;
+
+					// a box is registered in several cells, it is only reported from the cell of its location
+					if (col(boxX) != col || row(boxY) != row)
+						continue;
+
+					if (Math.abs(boxX - x) > radius || Math.abs(boxY - y) > radius)
+						continue;
+
+					queryResult[count++] = box;
+
+				}
+			}
+		}
+
+		return count;
+	}
+
+	public SpriteBase getQueryResult(int index) {
+		return sprites[queryResult[index]];
+	}
+
+	/**
+	 * Position of a sprite of the last query result in the list of the last rebuild
+	 */
+	public int getQueryResultIndex(int index) {
+		return queryResult[index];
+	}
+
+	/**
+	 * Find the closest box which is hit by the scan line start + t * (dx,dy) before tMax.
+	 *
+	 * @param ignore Sprite whose box isn't tested, e. g. the one which casts the scan line
+	 * @param tMax Hits at or behind this parameter aren't needed, e. g. the closest wall hit
+	 * @return The parameter t of the closest hit before tMax or Double.POSITIVE_INFINITY if there is none
+	 */
+	public double nearestHit(double x, double y, double dx, double dy, SpriteBase ignore, double tMax) {
+
+		if (size == 0)
+			return Double.POSITIVE_INFINITY;
+
+		double tLimit = Math.min(1, tMax);
+
+		double nearest = traverse(x, y, dx, dy, tLimit, ignore);
+
+		return nearest < tLimit ? nearest : Double.POSITIVE_INFINITY;
+	}
+
+	@Override
+	double nearestHitInCell(int cell, double x, double y, double dx, double dy, double nearest, SpriteBase ignore) {
+
+		double invDx = 1.0 / dx;
+		double invDy = 1.0 / dy;
+
+		for (int i = cellStart[cell]; i < cellStart[cell + 1]; i++) {
+
+			int box = cellItems[i];
+
+			if (sprites[box] == ignore)
+				continue;
+
+			double t = RayBox.entry(boxMinX[box], boxMinY[box], boxMaxX[box], boxMaxY[box], x, y, dx, dy, invDx, invDy);
+
+			if (t < nearest) {
+				nearest = t;
+			}
+
+		}
+
+		return nearest;
+	}
+
+	public int size() {
+		return size;
+	}
+
+}
@@ -11,6 +11,10 @@ public class SpriteBase {
 	double maxSpeed = 1;
 	double maxForce = 0.3;
 
+	// size of the box around the location
+	double width = 10;
+	double height = 10;
+
 	public SpriteBase() {
 
 		this.location = new PVector(0, 0);
@@ -67,7 +71,7 @@ public class SpriteBase {
 
 	public PVector separate(List<Mover> sprites) {
 
-		double desiredseparation = 100;
+		double desiredseparation = Settings.SEPARATION_RADIUS;
 
 		PVector steer = new PVector(0, 0, 0);
 		int count = 0;
@@ -88,6 +92,51 @@ public class SpriteBase {
 			}
 		}
 
+		return separationSteer(steer, count);
+	}
+
+	/**
+	 * Separate from the sprites in the neighbour grid. Only the sprites in the cells around the location
+	 * are visited, the result is the same as the one of separate(List).
+	 *
+	 * @param neighbours Grid with a cell size of at least the separation radius
+	 */
+	public PVector separate(SpatialHash neighbours) {
+
+		double desiredseparation = Settings.SEPARATION_RADIUS;
+
+		double sumX = 0;
+		double sumY = 0;
+		int count = 0;
+
+		int neighbourCount = neighbours.query(location.x, location.y, desiredseparation);
+
+		for (int i = 0; i < neighbourCount; i++) {
+
+			PVector other = neighbours.getQueryResult(i).location;
+
+			double dx = location.x - other.x;
+			double dy = location.y - other.y;
+			double d = Math.sqrt(dx * dx + dy * dy);
+
+			if ((d > 0) && (d < desiredseparation)) {
+
+				// normalized difference, weighted by the distance
+				sumX += dx / d / d;
+				sumY += dy / d / d;
+
+				count++;
+			}
+		}
+
+		return separationSteer(new PVector(sumX, sumY, 0), count);
+	}
+
+	/**
+	 * Steering force from the sum of the weighted differences to the neighbours
+	 */
+	private PVector separationSteer(PVector steer, int count) {
+
 		if (count > 0) {
 			steer.div((double) count);
 		}
@@ -159,4 +208,12 @@ public class SpriteBase {
 		this.maxSpeed = maxSpeed;
 	}
 
+	public double getWidth() {
+		return width;
+	}
+
+	public double getHeight() {
+		return height;
+	}
+
 }
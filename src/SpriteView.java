@@ -5,19 +5,30 @@ import javafx.scene.layout.Pane;
 import javafx.scene.paint.Color;
 import javafx.scene.shape.Rectangle;
 
-public class SpriteView extends SpriteBase {
+/**
+ * Visual representation of a sprite of the simulation
+ */
+public class SpriteView {
+
+	SpriteBase sprite = null;
 
 	Node view = null;
 	Pane layer = null;
 	
-	double width = 10;
-	double height = 10;
-	double centerX = width / 2;
-	double centerY = height / 2;
+	double width;
+	double height;
+	double centerX;
+	double centerY;
 	
-	public SpriteView( Pane layer) {
+	public SpriteView( Pane layer, SpriteBase sprite) {
 	
 		this.layer = layer;
+		this.sprite = sprite;
+
+		this.width = sprite.getWidth();
+		this.height = sprite.getHeight();
+		this.centerX = width / 2;
+		this.centerY = height / 2;
 		
 		createView();
 		addViewToLayer();
@@ -49,8 +60,19 @@ public class SpriteView extends SpriteBase {
 	public Node getView() {
 		return view;
 	}
+
+	public SpriteBase getSprite() {
+		return sprite;
+	}
 	
 	public void updateUI() {
-		view.relocate(location.x - centerX, location.y - centerY);
+		updateUI(sprite.getLocation().x, sprite.getLocation().y);
+	}
+
+	/**
+	 * Move the view to the given location, e. g. an interpolated one
+	 */
+	public void updateUI(double x, double y) {
+		view.relocate(x - centerX, y - centerY);
 	}
 }
@@ -0,0 +1,84 @@
+package AgentsLineOfSight;
+
+/**
+ * Application level trace events for profilers. The default tracer does nothing. If the JFR tracer of the jfr directory
+ * is on the class path and the JVM supports JDK Flight Recorder (Java 11+), it is used instead and the events
+ * appear in the recordings next to the allocation and GC events.
+ *
+ * The begin and end calls of an event must be made by the same thread.
+ */
+public class Tracer {
+
+	private static final Tracer tracer = create();
+
+	/**
+	 * Return the one instance of this class
+	 */
+	public static Tracer get() {
+		return tracer;
+	}
+
+	private static Tracer create() {
+
+		try {
+
+			return (Tracer) Class.forName("AgentsLineOfSight.JfrTracer").getDeclaredConstructor().newInstance();
+
+		} catch (ReflectiveOperationException | LinkageError e) {
+
+			// no jfr tracer on the class path or no flight recorder in the jvm
+			return new Tracer();
+
+		}
+
+	}
+
+	/**
+	 * Check if events are recorded. Data which is only needed for the events, e. g. counters, should only be collected if they are.
+	 */
+	public boolean isEnabled() {
+		return false;
+	}
+
+	public void beginLevelGeneration() {
+	}
+
+	/**
+	 * @param lineCount Number of scene lines
+	 * @param rawLineCount Number of scene lines before merging
+	 * @param roomCount Number of rooms
+	 */
+	public void endLevelGeneration(int lineCount, int rawLineCount, int roomCount) {
+	}
+
+	public void beginVisibility() {
+	}
+
+	/**
+	 * @param agent Id of the agent
+	 * @param rayCount Number of scan lines
+	 * @param testedLines Number of scene lines which have been tested for intersections
+	 * @param hits Number of scan lines which hit a scene line or an agent
+	 */
+	public void endVisibility(int agent, int rayCount, long testedLines, long hits) {
+	}
+
+	public void beginSteering() {
+	}
+
+	/**
+	 * @param agentCount Number of agents which have been steered
+	 */
+	public void endSteering(int agentCount) {
+	}
+
+	public void beginRenderPass() {
+	}
+
+	/**
+	 * @param pass Name of the render pass
+	 */
+	public void endRenderPass(String pass) {
+	}
+
+}
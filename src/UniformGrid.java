@@ -0,0 +1,210 @@
+package AgentsLineOfSight;
+
+import java.util.BitSet;
+
+/**
+ * Uniform grid over the scene lines. Every cell keeps the indices of the lines which pass through it,
+ * so that a scan line only needs to be tested against the lines of the cells it actually crosses.
+ * The cells are traversed in scan line direction (DDA), the traversal stops at the first cell which
+ * contains a hit.
+ */
+public class UniformGrid extends CellGrid<long[]> implements SceneIndex {
+
+	/**
+	 * Lines which touch a cell border are registered in both cells
+	 */
+	private static final double EPSILON = 1E-6;
+
+	SegmentBuffer segments;
+
+	/**
+	 * The lines of cell i are cellLines[ cellStart[i]] ... cellLines[ cellStart[i+1] - 1]
+	 */
+	int[] cellStart;
+	int[] cellLines;
+
+	/**
+	 * The lines which are found, null for all lines
+	 */
+	BitSet filter = null;
+
+	public UniformGrid(SegmentBuffer segments, double cellSize) {
+
+		this.segments = segments;
+		this.cellSize = cellSize;
+
+		// grid bounds
+		minX = segments.boundsMinX;
+		minY = segments.boundsMinY;
+		maxX = segments.boundsMaxX;
+		maxY = segments.boundsMaxY;
+
+		cols = (int) ((maxX - minX) / cellSize) + 1;
+		rows = (int) ((maxY - minY) / cellSize) + 1;
+
+		// count the lines per cell, then fill the cells
+		cellStart = new int[cols * rows + 1];
+
+		for (int i = 0; i < segments.size(); i++) {
+			rasterize(i, null);
+		}
+
+		for (int i = 0; i < cols * rows; i++) {
+			cellStart[i + 1] += cellStart[i];
+		}
+
+		cellLines = new int[cellStart[cols * rows]];
+
+		int[] fill = new int[cols * rows];
+		for (int i = 0; i < segments.size(); i++) {
+			rasterize(i, fill);
+		}
+
+	}
+
+	/**
+	 * View of the grid which only finds the given lines
+	 */
+	private UniformGrid(UniformGrid grid, BitSet filter) {
+
+		this.segments = grid.segments;
+		this.cellSize = grid.cellSize;
+		this.minX = grid.minX;
+		this.minY = grid.minY;
+		this.maxX = grid.maxX;
+		this.maxY = grid.maxY;
+		this.cols = grid.cols;
+		this.rows = grid.rows;
+		this.cellStart = grid.cellStart;
+		this.cellLines = grid.cellLines;
+		this.filter = filter;
+
+	}
+
+	/**
+	 * Register the line in all cells it touches. Without fill array only the cells are counted.
+	 *
+	 * @param index Index of the line
+	 * @param fill Number of lines which have already been added per cell, null while counting
+	 */
+	private void rasterize(int index, int[] fill) {
+
+		double x1 = segments.x1[index];
+		double y1 = segments.y1[index];
+		double x2 = segments.x2[index];
+		double y2 = segments.y2[index];
+
+		int colStart = col(segments.minX[index] - EPSILON);
+		int colEnd = col(segments.maxX[index] + EPSILON);
+		int rowStart = row(segments.minY[index] - EPSILON);
+		int rowEnd = row(segments.maxY[index] + EPSILON);
+
+		for (int row = rowStart; row <= rowEnd; row++) {
+			for (int col = colStart; col <= colEnd; col++) {
+
+				// diagonal lines don't touch every cell of their bounding box
+				if (!touchesCell(x1, y1, x2, y2, col, row))
+					continue;
+
+				int cell = row * cols + col;
+
+				if (fill == null) {
+					cellStart[cell + 1]++;
+				} else {
+					cellLines[cellStart[cell] + fill[cell]] = index;
+					fill[cell]++;
+				}
+
+			}
+		}
+
+	}
+
+	/**
+	 * Check if the line passes the cell, i. e. the corners of the cell aren't all on the same side of the line
+	 */
+	private boolean touchesCell(double x1, double y1, double x2, double y2, int col, int row) {
+
+		double cellMinX = minX + col * cellSize - EPSILON;
+		double cellMinY = minY + row * cellSize - EPSILON;
+		double cellMaxX = minX + (col + 1) * cellSize + EPSILON;
+		double cellMaxY = minY + (row + 1) * cellSize + EPSILON;
+
+		double dx = x2 - x1;
+		double dy = y2 - y1;
+
+		double a = dx * (cellMinY - y1) - dy * (cellMinX - x1);
+		double b = dx * (cellMinY - y1) - dy * (cellMaxX - x1);
+		double c = dx * (cellMaxY - y1) - dy * (cellMinX - x1);
+		double d = dx * (cellMaxY - y1) - dy * (cellMaxX - x1);
+
+		if (a > 0 && b > 0 && c > 0 && d > 0)
+			return false;
+
+		if (a < 0 && b < 0 && c < 0 && d < 0)
+			return false;
+
+		return true;
+	}
+
+	/**
+	 * Find the lines which pass through the cells that overlap the square of the given radius around x,y.
+	 * The result is a superset of the lines within the radius.
+	 *
+	 * @param found The indices of the lines found are set, a line which is in several cells is only set once
+	 */
+	public void query(double x, double y, double radius, BitSet found) {
+
+		int colStart = col(x - radius);
+		int colEnd = col(x + radius);
+		int rowStart = row(y - radius);
+		int rowEnd = row(y + radius);
+
+		for (int row = rowStart; row <= rowEnd; row++) {
+			for (int col = colStart; col <= colEnd; col++) {
+
+				int cell = row * cols + col;
+
+				for (int i = cellStart[cell]; i < cellStart[cell + 1]; i++) {
+					found.set(cellLines[i]);
+				}
+
+			}
+		}
+
+	}
+
+	@Override
+	public double nearestHit(double x, double y, double dx, double dy, long[] tests) {
+		return traverse(x, y, dx, dy, 1, tests);
+	}
+
+	@Override
+	double nearestHitInCell(int cell, double x, double y, double dx, double dy, double nearest, long[] tests) {
+
+		if (tests != null) {
+			tests[0] += cellStart[cell + 1] - cellStart[cell];
+		}
+
+		for (int i = cellStart[cell]; i < cellStart[cell + 1]; i++) {
+
+			if (filter != null && !filter.get(cellLines[i]))
+				continue;
+
+			double t = segments.intersect(cellLines[i], x, y, dx, dy);
+
+			if (t < nearest) {
+				nearest = t;
+			}
+
+		}
+
+		return nearest;
+	}
+
+	@Override
+	public SceneIndex filter(BitSet lines) {
+		return new UniformGrid(this, lines);
+	}
+
+}
@@ -0,0 +1,128 @@
+package AgentsLineOfSight;
+
+/**
+ * Key of the last visibility calculation of a mover. The location and the view angle are quantized with the
+ * tolerances of the settings, as long as the pose stays in the same bucket the previous intersection points
+ * are reused. The level and the settings which influence the result are part of the key as well, including
+ * whether the scan lines are drawn, since they are only created if they are.
+ * A result with more scan lines than the mover's current budget is reused, one with fewer isn't.
+ * The other agents move independent of the pose of the mover, so while they occlude the agent boxes are tested again.
+ * The uniform scan lines keep their wall hits for that, in the other scan modes the hits decide which scan lines are
+ * cast and the cache isn't used at all.
+ */
+public class VisibilityCache {
+
+	boolean valid = false;
+
+	// quantized pose
+	long col;
+	long row;
+	long angle;
+
+	// scene and settings
+	Level level;
+	Engine engine;
+	int scanLineCount;
+	int scanLineStride;
+	ScanMode scanMode;
+	double refinementAngle;
+	double scanLineLength;
+	boolean limit;
+	boolean drawScanLines;
+	boolean agentOcclusion;
+
+	/**
+	 * The uniform scan lines and their wall hits if agents occlude, otherwise null
+	 */
+	ScanRays scanRays;
+	double[] wallHits;
+
+	/**
+	 * Check if the previous result of the mover can be reused
+	 */
+	public boolean matches(Mover mover, Level level, SettingsSnapshot settings) {
+
+		if (!valid)
+			return false;
+
+		double positionTolerance = settings.getCachePositionTolerance();
+		double angleTolerance = Math.toRadians(settings.getCacheAngleTolerance());
+
+		return this.level == level
+				&& col == bucket(mover.getLocation().x, positionTolerance)
+				&& row == bucket(mover.getLocation().y, positionTolerance)
+				&& angle == bucket(mover.getViewAngleRad(), angleTolerance)
+				&& engine == settings.getEngine()
+				&& scanLineCount == settings.getScanLineCount()
+				&& scanLineStride <= mover.getScanLineStride()
+				&& scanMode == settings.getScanMode()
+				&& refinementAngle == settings.getRefinementAngle()
+				&& scanLineLength == settings.getScanLineLength()
+				&& limit == settings.isLimitToScanLineLength()
+				&& drawScanLines == settings.isDrawScanLines()
+				&& agentOcclusion == settings.isAgentOcclusion();
+	}
+
+	/**
+	 * Remember the pose of the mover after its visibility has been calculated
+	 */
+	public void update(Mover mover, Level level, SettingsSnapshot settings) {
+		update(mover, level, settings, null, null);
+	}
+
+	/**
+	 * Remember the pose of the mover and the wall hits of its scan lines, the agent boxes are tested again on a hit
+	 */
+	public void update(Mover mover, Level level, SettingsSnapshot settings, ScanRays scanRays, double[] wallHits) {
+
+		double positionTolerance = settings.getCachePositionTolerance();
+		double angleTolerance = Math.toRadians(settings.getCacheAngleTolerance());
+
+		this.col = bucket(mover.getLocation().x, positionTolerance);
+		this.row = bucket(mover.getLocation().y, positionTolerance);
+		this.angle = bucket(mover.getViewAngleRad(), angleTolerance);
+
+		this.level = level;
+		this.engine = settings.getEngine();
+		this.scanLineCount = settings.getScanLineCount();
+		this.scanLineStride = mover.getScanLineStride();
+		this.scanMode = settings.getScanMode();
+		this.refinementAngle = settings.getRefinementAngle();
+		this.scanLineLength = settings.getScanLineLength();
+		this.limit = settings.isLimitToScanLineLength();
+		this.drawScanLines = settings.isDrawScanLines();
+		this.agentOcclusion = settings.isAgentOcclusion();
+
+		this.scanRays = scanRays;
+		this.wallHits = wallHits;
+
+		this.valid = true;
+
+	}
+
+	public void invalidate() {
+		valid = false;
+		scanRays = null;
+		wallHits = null;
+	}
+
+	public ScanRays getScanRays() {
+		return scanRays;
+	}
+
+	public double[] getWallHits() {
+		return wallHits;
+	}
+
+	/**
+	 * Bucket of the value. Without tolerance only the exact same value falls into the same bucket.
+	 */
+	private static long bucket(double value, double tolerance) {
+
+		if (tolerance <= 0)
+			return Double.doubleToLongBits(value);
+
+		return (long) Math.floor(value / tolerance);
+	}
+
+}
@@ -0,0 +1,188 @@
+package AgentsLineOfSight;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Which agent can see which other agent, calculated for all pairs at once. Agent a sees agent b if b is within
+ * the range and the view cone of a and no scene line is between them. Only the pairs which the broadphase grid
+ * finds within the range are tested, the range is the same for all agents, so every pair is found twice and
+ * handled once: both cone tests, then a single occlusion ray between the two agents for both directions.
+ *
+ * The result is a bit matrix, row a has a bit for every agent b which a can see.
+ */
+public class VisibilityMatrix {
+
+	int size = 0;
+	int wordsPerRow = 0;
+	long[] bits = new long[0];
+
+	/**
+	 * Pairs within the range square of the broadphase and occlusion rays of the last calculation
+	 */
+	int candidateCount = 0;
+	int rayCount = 0;
+
+	/**
+	 * Locations of the agents, rebuilt for every calculation. Copies don't need it.
+	 */
+	SpatialHash broadphase;
+
+	/**
+	 * Calculate the matrix for the given agents
+	 *
+	 * @param agents The row and column of an agent is its index in this list
+	 * @param index Scene lines which block the view
+	 * @param range View distance
+	 */
+	public void calculate(List<Mover> agents, SceneIndex index, double range) {
+
+		size = agents.size();
+		wordsPerRow = (size + 63) >>> 6;
+
+		if (bits.length < size * wordsPerRow) {
+			bits = new long[size * wordsPerRow];
+		}
+
+		Arrays.fill(bits, 0, size * wordsPerRow, 0);
+
+		candidateCount = 0;
+		rayCount = 0;
+
+		if (broadphase == null) {
+			broadphase = new SpatialHash(10);
+		}
+
+		broadphase.rebuild(agents);
+
+		for (int a = 0; a < size; a++) {
+
+			Mover viewer = agents.get(a);
+
+			double x = viewer.getLocation().x;
+			double y = viewer.getLocation().y;
+
+			int count = broadphase.query(x, y, range);
+
+			for (int k = 0; k < count; k++) {
+
+				int b = broadphase.getQueryResultIndex(k);
+
+				// the pair is handled once, by its lower index
+				if (b <= a)
+					continue;
+
+				candidateCount++;
+
+				Mover other = agents.get(b);
+
+				double dx = other.getLocation().x - x;
+				double dy = other.getLocation().y - y;
+
+				if (dx * dx + dy * dy > range * range)
+					continue;
+
+				boolean aSeesB = isInCone(viewer, dx, dy);
+				boolean bSeesA = isInCone(other, -dx, -dy);
+
+				if (!aSeesB && !bSeesA)
+					continue;
+
+				rayCount++;
+
+				if (index.nearestHit(x, y, dx, dy) != Double.POSITIVE_INFINITY)
+					continue;
+
+				if (aSeesB) {
+					set(a, b);
+				}
+
+				if (bSeesA) {
+					set(b, a);
+				}
+
+			}
+
+		}
+
+	}
+
+	/**
+	 * Check if the direction is within the view cone of the agent
+	 */
+	private static boolean isInCone(Mover agent, double dx, double dy) {
+
+		double sweepAngle = agent.getSweepAngleRad();
+
+		if (sweepAngle >= Math.PI * 2 || (dx == 0 && dy == 0))
+			return true;
+
+		// difference to the view angle in [-pi, pi]
+		double difference = Math.atan2(dy, dx) - agent.getViewAngleRad();
+		difference -= Math.PI * 2 * Math.floor((difference + Math.PI) / (Math.PI * 2));
+
+		return Math.abs(difference) <= sweepAngle / 2;
+	}
+
+	private void set(int a, int b) {
+		bits[a * wordsPerRow + (b >>> 6)] |= 1L << b;
+	}
+
+	/**
+	 * Check if agent a can see agent b
+	 *
+	 * @param a Index of the viewer
+	 * @param b Index of the other agent
+	 * @return The result of the last calculation, false for unknown agents
+	 */
+	public boolean canSee(int a, int b) {
+
+		if (a < 0 || a >= size || b < 0 || b >= size)
+			return false;
+
+		return (bits[a * wordsPerRow + (b >>> 6)] & (1L << b)) != 0;
+	}
+
+	/**
+	 * Number of pairs (a,b) in which a sees b
+	 */
+	public int getVisibleCount() {
+
+		int count = 0;
+
+		for (int i = 0; i < size * wordsPerRow; i++) {
+			count += Long.bitCount(bits[i]);
+		}
+
+		return count;
+	}
+
+	/**
+	 * Copy of the result, e. g. for a snapshot of the simulation
+	 */
+	public VisibilityMatrix copy() {
+
+		VisibilityMatrix copy = new VisibilityMatrix();
+
+		copy.size = size;
+		copy.wordsPerRow = wordsPerRow;
+		copy.bits = Arrays.copyOf(bits, size * wordsPerRow);
+		copy.candidateCount = candidateCount;
+		copy.rayCount = rayCount;
+
+		return copy;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int getCandidateCount() {
+		return candidateCount;
+	}
+
+	public int getRayCount() {
+		return rayCount;
+	}
+
+}
@@ -0,0 +1,488 @@
+package AgentsLineOfSight;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Exact visibility polygon via an angular sweep. Instead of casting a fixed number of scan lines, the segment
+ * endpoints are sorted by their angle around the viewer and swept in that order. The segments which are
+ * crossed by the current sweep angle are kept in an ordered set, the closest one is the visible one.
+ * Between two events the visible segment doesn't change, so the polygon only needs points at the events.
+ * Only the lines of the grid cells around the view range are swept.
+ *
+ * The set is ordered by the distance along a ray between two events, where every segment of the set is crossed
+ * by the ray. This requires that the scene lines don't cross each other, otherwise they could swap their order
+ * while they are in the set. Crossing lines (e. g. the random lines) are therefore split at their intersections
+ * once when the sweep is created.
+ *
+ * The sweep only depends on the walls, the view cone, the range and the limit. The agent boxes, the culling,
+ * the scan line budget and the scan mode don't apply to it, the scan line count only sets the step of the arc.
+ */
+public class VisibilitySweep {
+
+	/**
+	 * Segments which are seen edge-on are ignored
+	 */
+	private static final double EPSILON = 1E-9;
+
+	private static final double TWO_PI = Math.PI * 2;
+
+	// non-crossing segments
+	double[] x1;
+	double[] y1;
+	double[] x2;
+	double[] y2;
+
+	int size = 0;
+
+	/**
+	 * The segments of line i of the segment buffer are the ones from partStart[i] to partStart[i + 1]
+	 */
+	int[] partStart;
+
+	/**
+	 * Grid over the unsplit lines, it finds the lines within the view range
+	 */
+	UniformGrid grid;
+
+	/**
+	 * Part of a segment which is visible from the viewer within the given angle range relative to the sweep start
+	 */
+	private static class Interval {
+
+		int id;
+
+		double x1;
+		double y1;
+		double x2;
+		double y2;
+
+		double angleStart;
+		double angleEnd;
+
+		public Interval(int id, double x1, double y1, double x2, double y2, double angleStart, double angleEnd) {
+			this.id = id;
+			this.x1 = x1;
+			this.y1 = y1;
+			this.x2 = x2;
+			this.y2 = y2;
+			this.angleStart = angleStart;
+			this.angleEnd = angleEnd;
+		}
+
+	}
+
+	/**
+	 * Order of the intervals by their distance along the ray in the given direction. The intervals must not cross
+	 * each other and all of them must be crossed by the ray.
+	 */
+	private static class SweepRay implements Comparator<Interval> {
+
+		double x;
+		double y;
+
+		double cos;
+		double sin;
+
+		public SweepRay(double x, double y) {
+			this.x = x;
+			this.y = y;
+		}
+
+		public void setAngle(double angle) {
+			this.cos = Math.cos(angle);
+			this.sin = Math.sin(angle);
+		}
+
+		@Override
+		public int compare(Interval a, Interval b) {
+
+			if (a == b)
+				return 0;
+
+			int result = Double.compare(rayDistance(a, x, y, cos, sin), rayDistance(b, x, y, cos, sin));
+
+			// overlapping collinear segments
+			if (result != 0)
+				return result;
+
+			return Integer.compare(a.id, b.id);
+		}
+
+	}
+
+	public VisibilitySweep(SegmentBuffer segments, UniformGrid grid) {
+
+		this.grid = grid;
+
+		// intersection parameters per line, found via the lines which share a grid cell
+		List<List<Double>> splits = new ArrayList<>();
+		for (int i = 0; i < segments.size(); i++) {
+			splits.add(new ArrayList<>());
+		}
+
+		for (int cell = 0; cell < grid.cols * grid.rows; cell++) {
+			for (int i = grid.cellStart[cell]; i < grid.cellStart[cell + 1]; i++) {
+				for (int j = i + 1; j < grid.cellStart[cell + 1]; j++) {
+					addCrossing(segments, grid.cellLines[i], grid.cellLines[j], splits);
+				}
+			}
+		}
+
+		// split the lines
+		int capacity = segments.size();
+		for (List<Double> list : splits) {
+			capacity += list.size();
+		}
+
+		x1 = new double[capacity];
+		y1 = new double[capacity];
+		x2 = new double[capacity];
+		y2 = new double[capacity];
+
+		partStart = new int[segments.size() + 1];
+
+		for (int i = 0; i < segments.size(); i++) {
+
+			partStart[i] = size;
+
+			double ax = segments.x1[i];
+			double ay = segments.y1[i];
+			double dx = segments.dx[i];
+			double dy = segments.dy[i];
+
+			List<Double> params = splits.get(i);
+			params.sort(null);
+			params.add(1.0);
+
+			double prevX = ax;
+			double prevY = ay;
+			double prevT = 0;
+
+			for (double t : params) {
+
+				// the same crossing may have been found in several cells
+				if (t - prevT < EPSILON)
+					continue;
+
+				double x = t == 1.0 ? segments.x2[i] : ax + t * dx;
+				double y = t == 1.0 ? segments.y2[i] : ay + t * dy;
+
+				x1[size] = prevX;
+				y1[size] = prevY;
+				x2[size] = x;
+				y2[size] = y;
+				size++;
+
+				prevX = x;
+				prevY = y;
+				prevT = t;
+
+			}
+		}
+
+		partStart[segments.size()] = size;
+
+	}
+
+	/**
+	 * If the 2 lines cross each other, register the crossing on both lines
+	 */
+	private void addCrossing(SegmentBuffer segments, int a, int b, List<List<Double>> splits) {
+
+		double ax = segments.dx[a];
+		double ay = segments.dy[a];
+		double bx = segments.dx[b];
+		double by = segments.dy[b];
+
+		double denominator = ax * by - ay * bx;
+
+		if (denominator == 0)
+			return;
+
+		double cx = segments.x1[b] - segments.x1[a];
+		double cy = segments.y1[b] - segments.y1[a];
+
+		double t = (cx * by - cy * bx) / denominator;
+		double u = (cx * ay - cy * ax) / denominator;
+
+		// touching lines are no problem, only real crossings
+		if (t <= EPSILON || t >= 1 - EPSILON || u <= EPSILON || u >= 1 - EPSILON)
+			return;
+
+		splits.get(a).add(t);
+		splits.get(b).add(u);
+
+	}
+
+	/**
+	 * Calculate the visibility polygon of the mover within its view cone and the scan line length.
+	 *
+	 * @param mover
+	 * @param settings The scan line length, the limit and the scan line count for the arc
+	 * @return The points of the polygon, ordered by angle
+	 */
+	public List<PVector> getVisibilityPolygon(Mover mover, SettingsSnapshot settings) {
+
+		double sweepAngle = Math.min(mover.getSweepAngleRad(), TWO_PI);
+		double angleStart = mover.getViewAngleRad() - sweepAngle / 2;
+
+		return getVisibilityPolygon(mover.getLocation(), angleStart, sweepAngle, settings.getScanLineLength(), sweepAngle / settings.getScanLineCount(), settings.isLimitToScanLineLength());
+
+	}
+
+	/**
+	 * Calculate the visibility polygon.
+	 *
+	 * @param location Location of the viewer
+	 * @param angleStart Start angle of the view cone
+	 * @param sweepAngle Opening angle of the view cone
+	 * @param range Maximum view distance
+	 * @param arcStep Angle step for the points on the arc of the view range
+	 * @param limit If true, directions without segment get a point at the view range, otherwise they are skipped
+	 * @return The points of the polygon, ordered by angle
+	 */
+	public List<PVector> getVisibilityPolygon(PVector location, double angleStart, double sweepAngle, double range, double arcStep, boolean limit) {
+
+		double vx = location.x;
+		double vy = location.y;
+
+		// events of the lines around the view range
+		BitSet lines = new BitSet(partStart.length - 1);
+		grid.query(vx, vy, range, lines);
+
+		List<Interval> intervals = new ArrayList<>();
+
+		for (int line = lines.nextSetBit(0); line >= 0; line = lines.nextSetBit(line + 1)) {
+			for (int i = partStart[line]; i < partStart[line + 1]; i++) {
+				addIntervals(i, vx, vy, angleStart, sweepAngle, range, intervals);
+			}
+		}
+
+		List<Interval> starts = new ArrayList<>(intervals);
+		starts.sort(Comparator.comparingDouble(interval -> interval.angleStart));
+
+		List<Interval> ends = intervals;
+		ends.sort(Comparator.comparingDouble(interval -> interval.angleEnd));
+
+		// segments which are crossed by the current sweep angle, ordered by distance
+		SweepRay ray = new SweepRay(vx, vy);
+		TreeSet<Interval> active = new TreeSet<>(ray);
+
+		List<PVector> points = new ArrayList<>();
+
+		int startIndex = 0;
+		int endIndex = 0;
+
+		// start of the view cone
+		while (startIndex < starts.size() && starts.get(startIndex).angleStart <= 0) {
+			startIndex++;
+		}
+
+		ray.setAngle(angleStart + nextEvent(starts, startIndex, ends, endIndex, sweepAngle) / 2);
+
+		for (int i = 0; i < startIndex; i++) {
+			active.add(starts.get(i));
+		}
+
+		double distanceStart = distance(active, vx, vy, angleStart, range, limit);
+
+		if (!Double.isNaN(distanceStart)) {
+			points.add(createPoint(vx, vy, angleStart, distanceStart));
+		}
+
+		double angle = 0;
+
+		while (angle < sweepAngle) {
+
+			double next = nextEvent(starts, startIndex, ends, endIndex, sweepAngle);
+
+			// no segment between the events => arc of the view range
+			if (active.isEmpty() && limit) {
+				for (double arcAngle = angle + arcStep; arcAngle < next; arcAngle += arcStep) {
+					points.add(createPoint(vx, vy, angleStart + arcAngle, range));
+				}
+			}
+
+			double distanceBefore = distance(active, vx, vy, angleStart + next, range, limit);
+
+			// the set is ordered along the ray before the event
+			ray.setAngle(angleStart + (angle + next) / 2);
+
+			while (endIndex < ends.size() && ends.get(endIndex).angleEnd <= next) {
+				active.remove(ends.get(endIndex++));
+			}
+
+			int insertIndex = startIndex;
+
+			while (startIndex < starts.size() && starts.get(startIndex).angleStart <= next) {
+				startIndex++;
+			}
+
+			// the remaining and the new segments are ordered along the ray after the event
+			ray.setAngle(angleStart + (next + nextEvent(starts, startIndex, ends, endIndex, sweepAngle)) / 2);
+
+			for (int i = insertIndex; i < startIndex; i++) {
+				active.add(starts.get(i));
+			}
+
+			double distanceAfter = distance(active, vx, vy, angleStart + next, range, limit);
+
+			if (!Double.isNaN(distanceBefore)) {
+				points.add(createPoint(vx, vy, angleStart + next, distanceBefore));
+			}
+
+			// the visible segment changes at the event => 2 points at the same angle
+			if (next < sweepAngle && !Double.isNaN(distanceAfter) && (Double.isNaN(distanceBefore) || Math.abs(distanceAfter - distanceBefore) > EPSILON)) {
+				points.add(createPoint(vx, vy, angleStart + next, distanceAfter));
+			}
+
+			angle = next;
+
+		}
+
+		return points;
+	}
+
+	/**
+	 * Angle of the next start or end of an interval which hasn't been processed, at most the sweep angle
+	 */
+	private static double nextEvent(List<Interval> starts, int startIndex, List<Interval> ends, int endIndex, double sweepAngle) {
+
+		double next = sweepAngle;
+
+		if (startIndex < starts.size())
+			next = Math.min(next, starts.get(startIndex).angleStart);
+
+		if (endIndex < ends.size())
+			next = Math.min(next, ends.get(endIndex).angleEnd);
+
+		return next;
+	}
+
+	/**
+	 * Clip the segment to the view range and add the parts within the view cone
+	 */
+	private void addIntervals(int i, double vx, double vy, double angleStart, double sweepAngle, double range, List<Interval> intervals) {
+
+		double ax = x1[i];
+		double ay = y1[i];
+		double dx = x2[i] - ax;
+		double dy = y2[i] - ay;
+
+		// quick rejection via bounding box
+		if (Math.min(ax, x2[i]) > vx + range || Math.max(ax, x2[i]) < vx - range || Math.min(ay, y2[i]) > vy + range || Math.max(ay, y2[i]) < vy - range)
+			return;
+
+		// clip to view range: |a + s * d - v| = range
+		double a = dx * dx + dy * dy;
+		double b = 2 * (dx * (ax - vx) + dy * (ay - vy));
+		double c = (ax - vx) * (ax - vx) + (ay - vy) * (ay - vy) - range * range;
+
+		double discriminant = b * b - 4 * a * c;
+
+		if (a == 0 || discriminant <= 0)
+			return;
+
+		double root = Math.sqrt(discriminant);
+		double sStart = Math.max(0, (-b - root) / (2 * a));
+		double sEnd = Math.min(1, (-b + root) / (2 * a));
+
+		if (sStart >= sEnd)
+			return;
+
+		double px = ax + sStart * dx;
+		double py = ay + sStart * dy;
+		double qx = ax + sEnd * dx;
+		double qy = ay + sEnd * dy;
+
+		// order the endpoints by angle
+		double cross = (px - vx) * (qy - vy) - (py - vy) * (qx - vx);
+
+		if (Math.abs(cross) < EPSILON)
+			return;
+
+		if (cross < 0) {
+			double tx = px;
+			double ty = py;
+			px = qx;
+			py = qy;
+			qx = tx;
+			qy = ty;
+		}
+
+		double angleP = relativeAngle(px - vx, py - vy, angleStart);
+		double angleQ = relativeAngle(qx - vx, qy - vy, angleStart);
+
+		// the segment crosses the start of the sweep => 2 intervals
+		if (angleQ < angleP) {
+			addInterval(i, px, py, qx, qy, angleP, TWO_PI, sweepAngle, intervals);
+			addInterval(i, px, py, qx, qy, 0, angleQ, sweepAngle, intervals);
+		} else {
+			addInterval(i, px, py, qx, qy, angleP, angleQ, sweepAngle, intervals);
+		}
+
+	}
+
+	private void addInterval(int i, double px, double py, double qx, double qy, double angleP, double angleQ, double sweepAngle, List<Interval> intervals) {
+
+		angleQ = Math.min(angleQ, sweepAngle);
+
+		if (angleP >= angleQ)
+			return;
+
+		intervals.add(new Interval(i, px, py, qx, qy, angleP, angleQ));
+
+	}
+
+	/**
+	 * Angle of the vector relative to the given start angle in the range [0, 2 PI)
+	 */
+	private double relativeAngle(double x, double y, double angleStart) {
+
+		double angle = (Math.atan2(y, x) - angleStart) % TWO_PI;
+
+		if (angle < 0)
+			angle += TWO_PI;
+
+		return angle;
+	}
+
+	/**
+	 * Distance from the viewer to the segment along the given direction
+	 */
+	private static double rayDistance(Interval interval, double vx, double vy, double cos, double sin) {
+
+		double bx = interval.x2 - interval.x1;
+		double by = interval.y2 - interval.y1;
+
+		double denominator = cos * by - sin * bx;
+
+		if (denominator == 0)
+			return Double.POSITIVE_INFINITY;
+
+		double cx = interval.x1 - vx;
+		double cy = interval.y1 - vy;
+
+		return (cx * by - cy * bx) / denominator;
+	}
+
+	/**
+	 * Distance to the closest active segment, the view range if there is none and the view is limited, otherwise NaN
+	 */
+	private double distance(TreeSet<Interval> active, double vx, double vy, double angle, double range, boolean limit) {
+
+		if (active.isEmpty())
+			return limit ? range : Double.NaN;
+
+		return Math.min(range, rayDistance(active.first(), vx, vy, Math.cos(angle), Math.sin(angle)));
+	}
+
+	private PVector createPoint(double vx, double vy, double angle, double distance) {
+		return new PVector(vx + Math.cos(angle) * distance, vy + Math.sin(angle) * distance);
+	}
+
+}
@@ -0,0 +1,62 @@
+package AgentsLineOfSight;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * The batch kernels must find the same closest hit as the scalar kernel of the segment buffer. The test runs with the
+ * vector module, so create() returns the vector kernel and both kernels are covered.
+ */
+public class BatchKernelTest {
+
+	/**
+	 * The kernels compare fractions instead of divided values, so segments which end exactly at the scan line
+	 * may be rounded differently than in the scalar kernel
+	 */
+	private static final double TOLERANCE = 1E-9;
+
+	@Test
+	public void createsVectorKernel() {
+
+		Level level = TestScenes.createLevel(50, 0);
+
+		assertEquals("VectorKernel", BatchKernel.create(level.getSegments()).getClass().getSimpleName());
+
+	}
+
+	@Test
+	public void randomRaysMatchScalarKernel() {
+
+		for (int roomIterations : new int[] { 50, 200, 4000 }) {
+
+			Level level = TestScenes.createLevel(roomIterations, 150);
+
+			SegmentBuffer segments = level.getSegments();
+
+			for (BatchKernel kernel : new BatchKernel[] { new BatchKernel(segments), BatchKernel.create(segments) }) {
+				TestScenes.assertSameHits(segments, kernel, TestScenes.createRandomRays(segments, 5000), TOLERANCE);
+			}
+
+		}
+
+	}
+
+	@Test
+	public void endpointRaysMatchScalarKernel() {
+
+		for (int roomIterations : new int[] { 50, 200, 4000 }) {
+
+			Level level = TestScenes.createLevel(roomIterations, 0);
+
+			SegmentBuffer segments = level.getSegments();
+
+			for (BatchKernel kernel : new BatchKernel[] { new BatchKernel(segments), BatchKernel.create(segments) }) {
+				TestScenes.assertSameHits(segments, kernel, TestScenes.createEndpointRays(segments, 5000), TOLERANCE);
+			}
+
+		}
+
+	}
+
+}
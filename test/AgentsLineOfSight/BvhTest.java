@@ -0,0 +1,39 @@
+package AgentsLineOfSight;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * The bounding volume hierarchy must find the same closest hit as the brute force search of the segment buffer
+ */
+public class BvhTest {
+
+	@Test
+	public void randomRaysMatchBruteForce() {
+
+		for (int roomIterations : new int[] { 50, 200, 4000 }) {
+
+			Level level = TestScenes.createLevel(roomIterations, 150);
+
+			TestScenes.assertSameHits(level.getSegments(), level.getBvh(), TestScenes.createRandomRays(level.getSegments(), 5000), 0);
+
+		}
+
+	}
+
+	/**
+	 * Scan lines through an endpoint on the border of a node box must not miss the node
+	 */
+	@Test
+	public void endpointRaysMatchBruteForce() {
+
+		for (int roomIterations : new int[] { 50, 200, 4000 }) {
+
+			Level level = TestScenes.createLevel(roomIterations, 0);
+
+			TestScenes.assertSameHits(level.getSegments(), level.getBvh(), TestScenes.createEndpointRays(level.getSegments(), 5000), 0);
+
+		}
+
+	}
+
+}
@@ -0,0 +1,128 @@
+package AgentsLineOfSight;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * The culling must not change the visibility polygon of any engine, and every engine must filter the lines like the
+ * brute force search
+ */
+public class CulledSegmentsTest {
+
+	private static final Engine[] ENGINES = { Engine.BRUTE_FORCE, Engine.GRID, Engine.BVH, Engine.BATCH };
+
+	@Test
+	public void filteredEnginesMatchBruteForce() {
+
+		Level level = TestScenes.createLevel(200, 150);
+		SegmentBuffer segments = level.getSegments();
+
+		// every other line, so that the closest line is often filtered and a line behind it is found
+		Random random = new Random(TestScenes.SEED);
+		BitSet lines = new BitSet(segments.size());
+
+		for (int i = 0; i < segments.size(); i++) {
+			if (random.nextBoolean()) {
+				lines.set(i);
+			}
+		}
+
+		List<double[]> rays = new ArrayList<>();
+		rays.addAll(TestScenes.createRandomRays(segments, 5000));
+		rays.addAll(TestScenes.createEndpointRays(segments, 5000));
+
+		SceneIndex expected = segments.filter(lines);
+
+		for (Engine engine : ENGINES) {
+
+			Settings.get().setEngine(engine);
+
+			TestScenes.assertSameHits(expected, new Algorithm().getSceneIndex(level).filter(lines), rays, 1E-9);
+
+		}
+
+		TestScenes.assertSameHits(expected, new BatchKernel(segments).filter(lines), rays, 1E-9);
+
+	}
+
+	@Test
+	public void cullingKeepsIntersectionPoints() {
+
+		Settings.get().setScanLineCount(360);
+		Settings.get().setAgentOcclusion(false);
+
+		for (int roomIterations : new int[] { 50, 200, 4000 }) {
+
+			Level level = TestScenes.createLevel(roomIterations, 150);
+			List<Mover> agents = createAgents(level, 50);
+
+			for (Engine engine : ENGINES) {
+				for (ScanMode scanMode : ScanMode.values()) {
+
+					Settings.get().setEngine(engine);
+					Settings.get().setScanMode(scanMode);
+
+					for (Mover agent : agents) {
+
+						Algorithm algorithm = new Algorithm();
+						ScanRays scanRays = algorithm.createScanRays(agent);
+
+						Settings.get().setCullLines(false);
+						List<PVector> expected = algorithm.getIntersectionPoints(agent, scanRays, level, null, null);
+
+						Settings.get().setCullLines(true);
+						List<PVector> actual = algorithm.getIntersectionPoints(agent, scanRays, level, null, null);
+
+						String message = engine + ", " + scanMode + ", agent at " + agent.getLocation().x + "," + agent.getLocation().y;
+
+						assertEquals(expected.size(), actual.size(), message);
+
+						for (int i = 0; i < expected.size(); i++) {
+							assertEquals(expected.get(i).x, actual.get(i).x, 1E-9, message);
+							assertEquals(expected.get(i).y, actual.get(i).y, 1E-9, message);
+						}
+
+					}
+
+				}
+			}
+
+		}
+
+		Settings.get().setCullLines(false);
+
+	}
+
+	/**
+	 * Agents at random locations within the level, looking in random directions
+	 */
+	private static List<Mover> createAgents(Level level, int count) {
+
+		Random random = new Random(TestScenes.SEED);
+
+		List<Mover> agents = new ArrayList<>();
+
+		for (int i = 0; i < count; i++) {
+
+			Mover agent = new Mover();
+			agent.setLocation(level.minX + random.nextDouble() * level.width, level.minY + random.nextDouble() * level.height);
+
+			// the view angle follows the velocity
+			double angle = random.nextDouble() * Math.PI * 2;
+			agent.setVelocity(Math.cos(angle), Math.sin(angle));
+			agent.move();
+
+			agents.add(agent);
+
+		}
+
+		return agents;
+	}
+
+}
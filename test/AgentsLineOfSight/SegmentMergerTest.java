@@ -0,0 +1,85 @@
+package AgentsLineOfSight;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Collinear lines within the tolerance must be merged wherever their carrier lines are, also when their offsets or
+ * angles lie on both sides of a multiple of the tolerance
+ */
+public class SegmentMergerTest {
+
+	private static final double EPSILON = 1E-3;
+
+	@Test
+	public void offsetsAcrossToleranceBoundaryAreMerged() {
+
+		for (int k = -5; k <= 5; k++) {
+
+			// offsets of 0.49 and 0.51 tolerances would round to different multiples of the tolerance
+			double y = (k + 0.49) * EPSILON;
+
+			List<Line> lines = new ArrayList<>();
+			lines.add(line(0, y, 10, y));
+			lines.add(line(5, y + 0.02 * EPSILON, 20, y + 0.02 * EPSILON));
+
+			List<Line> merged = SegmentMerger.merge(lines, EPSILON);
+
+			assertEquals(1, merged.size(), "offset " + y);
+			assertEquals(0, merged.get(0).getStart().x, EPSILON);
+			assertEquals(20, merged.get(0).getEnd().x, EPSILON);
+
+		}
+
+	}
+
+	@Test
+	public void anglesAcrossToleranceBoundaryAreMerged() {
+
+		for (int k = 1; k <= 5; k++) {
+
+			// the second line is rotated around the shared point, so that the angles lie on both sides of a multiple of 1E-9
+			double angle = (k * 1000 + 0.5) * 1E-9;
+			double delta = 2E-10;
+
+			List<Line> lines = new ArrayList<>();
+			lines.add(line(0, 0, 10 * Math.cos(angle - delta), 10 * Math.sin(angle - delta)));
+			lines.add(line(0, 0, 20 * Math.cos(angle + delta), 20 * Math.sin(angle + delta)));
+
+			List<Line> merged = SegmentMerger.merge(lines, EPSILON);
+
+			assertEquals(1, merged.size(), "angle " + angle);
+			assertEquals(20, merged.get(0).getEnd().x, EPSILON);
+
+		}
+
+	}
+
+	@Test
+	public void separateLinesAreKept() {
+
+		List<Line> lines = new ArrayList<>();
+
+		// parallel, farther apart than the tolerance
+		lines.add(line(0, 0, 10, 0));
+		lines.add(line(0, 2 * EPSILON, 10, 2 * EPSILON));
+
+		// collinear with a gap
+		lines.add(line(20, 0, 30, 0));
+
+		// crossing
+		lines.add(line(5, -5, 5, 5));
+
+		assertEquals(4, SegmentMerger.merge(lines, EPSILON).size());
+
+	}
+
+	private static Line line(double x1, double y1, double x2, double y2) {
+		return new Line(new PVector(x1, y1), new PVector(x2, y2));
+	}
+
+}
@@ -0,0 +1,127 @@
+package AgentsLineOfSight;
+
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Reproducible levels and scan lines for the tests. A scan line is stored as { x, y, dx, dy }.
+ */
+public class TestScenes {
+
+	/**
+	 * Fixed seed, so that a failing case can be reproduced
+	 */
+	public static final long SEED = 7;
+
+	/**
+	 * Level with reproducible rooms and random lines
+	 */
+	public static Level createLevel(int roomIterations, int lineCount) {
+
+		Settings.get().setRoomIterations(roomIterations);
+		Settings.get().setLineCount(lineCount);
+
+		return new Level(SEED);
+	}
+
+	/**
+	 * Scan lines with random start and direction within the scene bounds. Every fourth scan line is vertical and every
+	 * fourth one horizontal, they are parallel to the room walls.
+	 */
+	public static List<double[]> createRandomRays(SegmentBuffer segments, int count) {
+
+		Random random = new Random(SEED);
+
+		double width = segments.boundsMaxX - segments.boundsMinX;
+		double height = segments.boundsMaxY - segments.boundsMinY;
+
+		List<double[]> rays = new ArrayList<>();
+
+		for (int i = 0; i < count; i++) {
+
+			double x = segments.boundsMinX + random.nextDouble() * width;
+			double y = segments.boundsMinY + random.nextDouble() * height;
+			double dx = (random.nextDouble() - 0.5) * width;
+			double dy = (random.nextDouble() - 0.5) * height;
+
+			if (i % 4 == 1) {
+				dx = 0;
+			} else if (i % 4 == 2) {
+				dy = 0;
+			}
+
+			rays.add(new double[] { x, y, dx, dy });
+
+		}
+
+		return rays;
+	}
+
+	/**
+	 * Scan lines from random starts through exact segment endpoints. Half of them end at the endpoint, the other half
+	 * pass it. That's what the endpoint scan mode casts, and where rounding at box borders shows.
+	 */
+	public static List<double[]> createEndpointRays(SegmentBuffer segments, int count) {
+
+		Random random = new Random(SEED);
+
+		double width = segments.boundsMaxX - segments.boundsMinX;
+		double height = segments.boundsMaxY - segments.boundsMinY;
+
+		List<double[]> rays = new ArrayList<>();
+
+		for (int i = 0; i < count; i++) {
+
+			double x = segments.boundsMinX + random.nextDouble() * width;
+			double y = segments.boundsMinY + random.nextDouble() * height;
+
+			int segment = random.nextInt(segments.size());
+
+			double endX = random.nextBoolean() ? segments.x1[segment] : segments.x2[segment];
+			double endY = random.nextBoolean() ? segments.y1[segment] : segments.y2[segment];
+
+			double scale = i % 2 == 0 ? 1 : 1.5;
+
+			rays.add(new double[] { x, y, (endX - x) * scale, (endY - y) * scale });
+
+		}
+
+		return rays;
+	}
+
+	/**
+	 * Check that both indices find the same closest hit for every scan line
+	 *
+	 * @param tolerance Allowed difference of the parameter t, 0 for an exact match
+	 */
+	public static void assertSameHits(SceneIndex expected, SceneIndex actual, List<double[]> rays, double tolerance) {
+
+		int errors = 0;
+		String first = null;
+
+		for (double[] ray : rays) {
+
+			double expectedT = expected.nearestHit(ray[0], ray[1], ray[2], ray[3]);
+			double actualT = actual.nearestHit(ray[0], ray[1], ray[2], ray[3]);
+
+			if (expectedT == actualT || Math.abs(expectedT - actualT) <= tolerance)
+				continue;
+
+			if (first == null) {
+				first = String.format("ray (%s,%s) + (%s,%s): expected %s, was %s", ray[0], ray[1], ray[2], ray[3], expectedT, actualT);
+			}
+
+			errors++;
+
+		}
+
+		if (errors > 0) {
+			fail(errors + " of " + rays.size() + " scan lines differ, e. g. " + first);
+		}
+
+	}
+
+}
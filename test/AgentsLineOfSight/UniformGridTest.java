@@ -0,0 +1,36 @@
+package AgentsLineOfSight;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * The grid must find the same closest hit as the brute force search of the segment buffer
+ */
+public class UniformGridTest {
+
+	@Test
+	public void randomRaysMatchBruteForce() {
+
+		for (int roomIterations : new int[] { 50, 200, 4000 }) {
+
+			Level level = TestScenes.createLevel(roomIterations, 150);
+
+			TestScenes.assertSameHits(level.getSegments(), level.getGrid(), TestScenes.createRandomRays(level.getSegments(), 5000), 0);
+
+		}
+
+	}
+
+	@Test
+	public void endpointRaysMatchBruteForce() {
+
+		for (int roomIterations : new int[] { 50, 200, 4000 }) {
+
+			Level level = TestScenes.createLevel(roomIterations, 0);
+
+			TestScenes.assertSameHits(level.getSegments(), level.getGrid(), TestScenes.createEndpointRays(level.getSegments(), 5000), 0);
+
+		}
+
+	}
+
+}
@@ -0,0 +1,178 @@
+package AgentsLineOfSight;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * A cached result must be the same as a fresh calculation whenever something besides the pose changed. The agents
+ * of the tests don't move, so every cache hit is for the exact same pose.
+ */
+public class VisibilityCacheTest {
+
+	Simulation simulation;
+
+	@BeforeEach
+	public void setUp() {
+
+		Settings.get().setRoomIterations(200);
+		Settings.get().setLineCount(150);
+		Settings.get().setEngine(Engine.GRID);
+		Settings.get().setScanMode(ScanMode.UNIFORM);
+		Settings.get().setScanLineCount(360);
+		Settings.get().setRefinementAngle(0.5);
+		Settings.get().setScanLineLength(100);
+		Settings.get().setLimitToScanLineLength(true);
+		Settings.get().setDrawScanLines(false);
+		Settings.get().setAgentOcclusion(false);
+		Settings.get().setCullLines(false);
+		Settings.get().setAdaptiveScanLines(false);
+		Settings.get().setVisibilityMatrix(false);
+		Settings.get().setParallel(false);
+		Settings.get().setCache(true);
+		Settings.get().setCachePositionTolerance(5);
+		Settings.get().setCacheAngleTolerance(5);
+
+		simulation = new Simulation();
+
+		for (Mover agent : simulation.agents) {
+			agent.setMaxSpeed(0);
+		}
+
+	}
+
+	@AfterEach
+	public void tearDown() {
+
+		Settings.get().setCache(false);
+		Settings.get().setAgentOcclusion(false);
+
+	}
+
+	@Test
+	public void unchangedPoseIsReused() {
+
+		simulation.step();
+
+		long misses = simulation.getCacheMisses();
+
+		simulation.step();
+
+		assertEquals(misses, simulation.getCacheMisses());
+		assertTrue(simulation.getCacheHits() >= simulation.agents.size());
+
+		assertFreshResults();
+
+	}
+
+	@Test
+	public void changedSettingsAreRecalculated() {
+
+		Runnable[] changes = {
+				() -> Settings.get().setEngine(Engine.BVH),
+				() -> Settings.get().setScanLineCount(200),
+				() -> Settings.get().setScanMode(ScanMode.REFINED),
+				() -> Settings.get().setRefinementAngle(2),
+				() -> Settings.get().setScanMode(ScanMode.ENDPOINTS),
+				() -> Settings.get().setScanLineLength(300),
+				() -> Settings.get().setLimitToScanLineLength(false),
+				() -> Settings.get().setDrawScanLines(true),
+				() -> Settings.get().setAgentOcclusion(true),
+				() -> Settings.get().setScanMode(ScanMode.UNIFORM),
+				() -> simulation.createLevel(),
+		};
+
+		simulation.step();
+
+		for (Runnable change : changes) {
+
+			change.run();
+
+			long misses = simulation.getCacheMisses();
+
+			simulation.step();
+
+			assertEquals(misses + simulation.agents.size(), simulation.getCacheMisses());
+
+			assertFreshResults();
+
+		}
+
+	}
+
+	@Test
+	public void movedOccludersAreRecast() {
+
+		Settings.get().setAgentOcclusion(true);
+
+		// many agents, so that they block each other's view
+		Settings.ENEMY_COUNT = 200;
+
+		try {
+			simulation = new Simulation();
+		} finally {
+			Settings.ENEMY_COUNT = 8;
+		}
+
+		List<Mover> agents = simulation.agents;
+
+		for (Mover agent : agents) {
+			agent.setMaxSpeed(0);
+		}
+
+		simulation.step();
+
+		Random random = new Random(TestScenes.SEED);
+
+		for (int i = 0; i < 10; i++) {
+
+			// every other agent jumps, the others keep their pose and cached wall hits
+			for (int j = 0; j < agents.size(); j += 2) {
+				Level level = simulation.level;
+				agents.get(j).setLocation(level.minX + random.nextDouble() * level.width, level.minY + random.nextDouble() * level.height);
+			}
+
+			long hits = simulation.getCacheHits();
+
+			simulation.step();
+
+			assertTrue(simulation.getCacheHits() - hits >= agents.size() / 2);
+
+			assertFreshResults();
+
+		}
+
+	}
+
+	/**
+	 * Compare the points of every agent with a calculation without the cache
+	 */
+	private void assertFreshResults() {
+
+		Algorithm algorithm = new Algorithm();
+
+		SpatialHash occluders = Settings.get().isAgentOcclusion() ? simulation.occluders : null;
+
+		for (Mover agent : simulation.agents) {
+
+			List<PVector> expected = algorithm.getIntersectionPoints(agent, algorithm.createScanRays(agent), simulation.level, occluders, null);
+			List<PVector> actual = agent.getIntersectionPoints();
+
+			assertEquals(expected.size(), actual.size(), "agent " + agent.getId());
+
+			for (int i = 0; i < expected.size(); i++) {
+				assertEquals(expected.get(i).x, actual.get(i).x, 0, "agent " + agent.getId());
+				assertEquals(expected.get(i).y, actual.get(i).y, 0, "agent " + agent.getId());
+			}
+
+		}
+
+	}
+
+}
@@ -0,0 +1,108 @@
+package AgentsLineOfSight;
+
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * The edges of the visibility polygon must be where the brute force search finds the closest wall. Every edge is
+ * checked at the angle in its middle, except for the edges on the arc of the view range.
+ */
+public class VisibilitySweepTest {
+
+	private static final double TOLERANCE = 1E-6;
+
+	@Test
+	public void polygonMatchesBruteForce() {
+
+		for (int roomIterations : new int[] { 50, 200, 4000 }) {
+
+			Level level = TestScenes.createLevel(roomIterations, 150);
+
+			// the level draws its random lines from the seed, the viewers shouldn't stand on their endpoints
+			Random random = new Random(TestScenes.SEED + 1);
+
+			int errors = 0;
+			int edges = 0;
+			String first = null;
+
+			for (int i = 0; i < 500; i++) {
+
+				PVector location = new PVector(level.minX + random.nextDouble() * level.width, level.minY + random.nextDouble() * level.height);
+
+				double angleStart = random.nextDouble() * Math.PI * 2;
+				double sweepAngle = i % 2 == 0 ? Math.PI * 2 : random.nextDouble() * Math.PI * 2;
+				double range = i % 3 == 0 ? 300 : 100;
+
+				List<PVector> polygon = level.getVisibilitySweep().getVisibilityPolygon(location, angleStart, sweepAngle, range, Math.toRadians(1), true);
+
+				for (int j = 0; j + 1 < polygon.size(); j++) {
+
+					PVector a = polygon.get(j);
+					PVector b = polygon.get(j + 1);
+
+					double distanceA = PVector.dist(location, a);
+					double distanceB = PVector.dist(location, b);
+
+					// arc of the view range or the 2 points of an event
+					if (distanceA >= range - TOLERANCE && distanceB >= range - TOLERANCE)
+						continue;
+
+					double angleA = Math.atan2(a.y - location.y, a.x - location.x);
+					double angleB = Math.atan2(b.y - location.y, b.x - location.x);
+
+					double delta = Math.atan2(Math.sin(angleB - angleA), Math.cos(angleB - angleA));
+
+					if (Math.abs(delta) < 1E-9)
+						continue;
+
+					edges++;
+
+					double angle = angleA + delta / 2;
+
+					double dx = Math.cos(angle) * range;
+					double dy = Math.sin(angle) * range;
+
+					double t = level.getSegments().nearestHit(location.x, location.y, dx, dy);
+					double expected = t == Double.POSITIVE_INFINITY ? range : t * range;
+					double actual = edgeDistance(location, a, b, Math.cos(angle), Math.sin(angle));
+
+					if (Math.abs(expected - actual) <= TOLERANCE * range)
+						continue;
+
+					if (first == null) {
+						first = String.format("viewer (%s,%s), angle %s: expected %s, was %s", location.x, location.y, angle, expected, actual);
+					}
+
+					errors++;
+
+				}
+
+			}
+
+			if (errors > 0) {
+				fail(errors + " of " + edges + " edges differ, e. g. " + first);
+			}
+
+		}
+
+	}
+
+	/**
+	 * Distance from the viewer to the edge ab along the given direction
+	 */
+	private static double edgeDistance(PVector location, PVector a, PVector b, double cos, double sin) {
+
+		double bx = b.x - a.x;
+		double by = b.y - a.y;
+
+		double cx = a.x - location.x;
+		double cy = a.y - location.y;
+
+		return (cx * by - cy * bx) / (cos * by - sin * bx);
+	}
+
+}
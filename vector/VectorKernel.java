@@ -0,0 +1,102 @@
+package AgentsLineOfSight;
+
+import java.util.BitSet;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Batch kernel with explicit SIMD instructions of the Vector API. It requires Java 17+ and the incubator module
+ * (--add-modules jdk.incubator.vector), that's why it isn't in the src directory. Add this directory to the source path
+ * to use it for the batch engine, e. g. the benchmark module does. Without it the batch engine uses the plain BatchKernel.
+ *
+ * The lanes are tested in registers with the same margins as in the BatchKernel. Nothing is stored per lane,
+ * only the rare vectors with an intersection are resolved lane by lane.
+ */
+public class VectorKernel extends BatchKernel {
+
+	private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+	public VectorKernel(SegmentBuffer segments) {
+		super(segments);
+	}
+
+	public VectorKernel(SegmentBuffer segments, BitSet filter) {
+		super(segments, filter);
+	}
+
+	@Override
+	public SceneIndex filter(BitSet lines) {
+		return new VectorKernel(segments, lines);
+	}
+
+	@Override
+	public double nearestHit(double x, double y, double dx, double dy, long[] tests) {
+
+		if (tests != null) {
+			tests[0] += segments.size;
+		}
+
+		double[] x1 = segments.x1;
+		double[] y1 = segments.y1;
+		double[] bx = segments.dx;
+		double[] by = segments.dy;
+
+		double nearest = Double.POSITIVE_INFINITY;
+
+		int length = SPECIES.length();
+		int bound = SPECIES.loopBound(segments.size);
+
+		int start = 0;
+
+		for (; start < bound; start += length) {
+
+			DoubleVector vbx = DoubleVector.fromArray(SPECIES, bx, start);
+			DoubleVector vby = DoubleVector.fromArray(SPECIES, by, start);
+			DoubleVector cx = DoubleVector.fromArray(SPECIES, x1, start).sub(x);
+			DoubleVector cy = DoubleVector.fromArray(SPECIES, y1, start).sub(y);
+
+			DoubleVector denominator = vby.mul(dx).sub(vbx.mul(dy));
+			DoubleVector square = denominator.mul(denominator);
+
+			DoubleVector t = cx.mul(vby).sub(cy.mul(vbx)).mul(denominator);
+			DoubleVector u = cx.mul(dy).sub(cy.mul(dx)).mul(denominator);
+
+			VectorMask<Double> hit = t.mul(square.sub(t)).compare(VectorOperators.GE, 0).and(u.mul(square.sub(u)).compare(VectorOperators.GE, 0));
+
+			if (!hit.anyTrue())
+				continue;
+
+			// only the lanes with a hit need the division
+			long lanes = hit.toLong();
+
+			while (lanes != 0) {
+
+				int lane = Long.numberOfTrailingZeros(lanes);
+				lanes &= lanes - 1;
+
+				double value = intersectionParameter(start + lane, x, y, dx, dy);
+
+				if (value < nearest) {
+					nearest = value;
+				}
+			}
+
+		}
+
+		// remaining segments which don't fill a vector
+		for (; start < segments.size; start++) {
+
+			double value = intersectionParameter(start, x, y, dx, dy);
+
+			if (value < nearest) {
+				nearest = value;
+			}
+		}
+
+		return nearest;
+	}
+
+}